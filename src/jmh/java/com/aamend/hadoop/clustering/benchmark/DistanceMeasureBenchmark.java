@@ -0,0 +1,88 @@
+package com.aamend.hadoop.clustering.benchmark;
+
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance between pairs of sequences, for each distance measure. Pairs are
+ * picked in turn out of a pool so that successive calls do not compare the
+ * same sequences. The bounded benchmark uses threshold as the bound (see
+ * DistanceMeasures.distanceWithin), as done for T1 when creating canopies.
+ * <p/>
+ * Date: 17/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceMeasureBenchmark {
+
+    private static final int POOL = 1024;
+
+    @Param({"Levenshtein", "BitParallelLevenshtein", "Tanimoto", "SortedSetTanimoto"})
+    public String measure;
+
+    @Param({"16", "64", "256"})
+    public int length;
+
+    @Param({"4", "64", "4096"})
+    public int alphabet;
+
+    @Param({"0.5", "0.9"})
+    public double overlap;
+
+    @Param({"0.2"})
+    public double threshold;
+
+    private DistanceMeasure distanceMeasure;
+    private int[][] seq1;
+    private int[][] seq2;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        String className = DistanceMeasure.class.getPackage().getName() + "." + measure + "DistanceMeasure";
+        distanceMeasure = (DistanceMeasure) Class.forName(className).newInstance();
+        distanceMeasure.configure(new Configuration());
+
+        Random random = new Random(0L);
+        seq1 = new int[POOL][];
+        seq2 = new int[POOL][];
+        for (int i = 0; i < POOL; i++) {
+            int[] seq = Sequences.random(random, length, alphabet);
+            seq1[i] = DistanceMeasures.canonicalize(distanceMeasure, seq);
+            seq2[i] = DistanceMeasures.canonicalize(distanceMeasure,
+                    Sequences.derive(random, seq, alphabet, overlap));
+        }
+    }
+
+    @Benchmark
+    public double distance() {
+        int i = next++ & (POOL - 1);
+        return distanceMeasure.distance(seq1[i], seq2[i]);
+    }
+
+    @Benchmark
+    public double distanceWithin() {
+        int i = next++ & (POOL - 1);
+        return DistanceMeasures.distanceWithin(distanceMeasure, seq1[i], seq2[i], threshold);
+    }
+}
@@ -0,0 +1,88 @@
+package com.aamend.hadoop.clustering.benchmark;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.MedoidSelector;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canopy.computeCenter over a canopy of points derived from a same random
+ * sequence, using a MedoidSelector configured as in reducers (exact medoid
+ * up to MEDOID_EXACT_MAX points, sampled above).
+ * <p/>
+ * Date: 17/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedoidBenchmark {
+
+    @Param({"Levenshtein", "SortedSetTanimoto"})
+    public String measure;
+
+    @Param({"100", "1000", "10000"})
+    public int canopySize;
+
+    @Param({"16", "64"})
+    public int length;
+
+    @Param({"64"})
+    public int alphabet;
+
+    @Param({"0.8"})
+    public double overlap;
+
+    private List<int[]> points;
+    private MedoidSelector selector;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        String className = DistanceMeasure.class.getPackage().getName() + "." + measure + "DistanceMeasure";
+        Configuration conf = new Configuration();
+        DistanceMeasure distanceMeasure = (DistanceMeasure) Class.forName(className).newInstance();
+        distanceMeasure.configure(conf);
+        selector = new MedoidSelector(conf, distanceMeasure);
+
+        Random random = new Random(0L);
+        int[] center = Sequences.random(random, length, alphabet);
+        points = new ArrayList<int[]>(canopySize);
+        for (int i = 0; i < canopySize; i++) {
+            points.add(DistanceMeasures.canonicalize(distanceMeasure,
+                    Sequences.derive(random, center, alphabet, overlap)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        selector.close();
+    }
+
+    @Benchmark
+    public int[] computeCenter() {
+        Canopy canopy = new Canopy(1, points.get(0), points.size());
+        canopy.computeCenter(points, selector);
+        return canopy.getCenter();
+    }
+}
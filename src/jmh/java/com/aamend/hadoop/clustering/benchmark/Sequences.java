@@ -0,0 +1,32 @@
+package com.aamend.hadoop.clustering.benchmark;
+
+import java.util.Random;
+
+/**
+ * Random integer sequences used as benchmark input. A sequence derived
+ * from another one keeps each of its tokens with a probability given by
+ * the overlap ratio, and replaces it with a random token otherwise.
+ * <p/>
+ * Date: 17/10/26
+ */
+final class Sequences {
+
+    private Sequences() {
+    }
+
+    static int[] random(Random random, int length, int alphabet) {
+        int[] seq = new int[length];
+        for (int i = 0; i < length; i++) {
+            seq[i] = random.nextInt(alphabet);
+        }
+        return seq;
+    }
+
+    static int[] derive(Random random, int[] seq, int alphabet, double overlap) {
+        int[] derived = new int[seq.length];
+        for (int i = 0; i < seq.length; i++) {
+            derived[i] = random.nextDouble() < overlap ? seq[i] : random.nextInt(alphabet);
+        }
+        return derived;
+    }
+}
@@ -21,10 +21,35 @@ public class Canopy implements Cluster {
     public static final String CLUSTER_MEASURE = "cluster.measure";
     public static final String MAX_DISTANCE = "cluster.max.measure";
     public static final String LAST_ITERATION = "cluster.last.iteration";
+    public static final String CLUSTER_INDEX = "cluster.index";
+    public static final String MINHASH_BANDS = "cluster.minhash.bands";
+    public static final String MINHASH_ROWS = "cluster.minhash.rows";
+    public static final String MINHASH_SEED = "cluster.minhash.seed";
+    public static final String COMBINER_SAMPLE = "cluster.combiner.sample";
+    public static final String MEDOID_EXACT_MAX = "cluster.medoid.exact.max";
+    public static final String MEDOID_SAMPLE_SIZE = "cluster.medoid.sample.size";
+    public static final String MEDOID_SAMPLES = "cluster.medoid.samples";
+    public static final String MEDOID_THREADS = "cluster.medoid.threads";
+    public static final String REDUCER_SAMPLE = "cluster.reducer.sample";
+    public static final String MAPPER_THREADS = "cluster.mapper.threads";
+    public static final String ENGINE = "cluster.engine";
+    public static final String LOCAL_THREADS = "cluster.local.threads";
+    public static final String SINGLE_PASS = "cluster.single.pass";
+    public static final String SINGLE_PASS_SAMPLE = "cluster.single.pass.sample";
+    public static final String MAPPER_AGGREGATE = "cluster.mapper.aggregate";
+    public static final String MAPPER_SPILL = "cluster.mapper.spill";
+    public static final String ADAPTIVE = "cluster.adaptive";
+    public static final String ADAPTIVE_CONVERGENCE = "cluster.adaptive.convergence";
+    public static final String ADAPTIVE_REDUCER_CANOPIES = "cluster.adaptive.reducer.canopies";
+    public static final String INSTRUMENT = "cluster.instrument";
+    public static final String DEDUP = "cluster.dedup";
+    public static final String INCREMENTAL_RECENTER = "cluster.incremental.recenter";
+    public static final String OUTPUT_BUCKETS = "cluster.output.buckets";
 
     private int id;
     private long num;
     private int[] center;
+    private long weight = 1L;
 
     public Canopy(int id, int[] center) {
         num = 1;
@@ -38,6 +63,13 @@ public class Canopy implements Cluster {
         this.num = num;
     }
 
+    public Canopy(int id, int[] center, long num, long weight) {
+        this.id = id;
+        this.center = center;
+        this.num = num;
+        this.weight = weight;
+    }
+
     @Override
     public double pdf(int[] x, DistanceMeasure measure) {
         return 1 - measure.distance(center, x);
@@ -50,35 +82,28 @@ public class Canopy implements Cluster {
 
     @Override
     public void computeCenter(List<int[]> centers, DistanceMeasure measure) {
+        computeCenter(centers, new MedoidSelector(measure));
+    }
+
+    @Override
+    public void computeCenter(List<int[]> centers, MedoidSelector selector) {
 
         if (centers.size() <= 1) {
             return;
         }
 
-        double[] averages = new double[centers.size()];
-        for (int i = 0; i < centers.size(); i++) {
-            double average = 0.0d;
-            // Consider center i
-            // Compute distance to other points
-            for (int j = 0; j < centers.size(); j++) {
-                if (j != i) {
-                    average += measure.distance(centers.get(i), centers.get(j));
-                }
-            }
-            averages[i] = average / (centers.size() - 1);
-        }
+        this.center = centers.get(selector.select(centers));
 
-        double min = Double.MAX_VALUE;
-        int minIdx = 0;
-        for (int i = 0; i < averages.length; i++) {
-            double average = averages[i];
-            if (average < min) {
-                min = average;
-                minIdx = i;
-            }
+    }
+
+    @Override
+    public void computeCenter(List<int[]> centers, long[] weights, MedoidSelector selector) {
+
+        if (centers.size() <= 1) {
+            return;
         }
 
-        this.center = centers.get(minIdx);
+        this.center = centers.get(selector.select(centers, weights));
 
     }
 
@@ -97,6 +122,11 @@ public class Canopy implements Cluster {
         return num;
     }
 
+    @Override
+    public long getWeight() {
+        return weight;
+    }
+
     @Override
     public String asFormattedString() {
         StringBuilder sb = new StringBuilder(50);
@@ -1,6 +1,7 @@
 package com.aamend.hadoop.clustering.cluster;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -10,14 +11,27 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Int centers are written using a compact format: a one-byte tag (high bit
+ * set), variable-length id and observations, then the delta of each element
+ * to the previous one as a variable-length integer. Legacy format (id as a
+ * fixed int, hence a positive first byte, followed by the component type
+ * name) is still readable, and still used for other component types.
+ * Weighted centers (see DEDUP) use a second tag, followed by the weight.
+ * <p/>
  * Author: antoine.amend@gmail.com
  * Date: 21/03/14
  */
 public class CanopyWritable implements Writable {
 
+    // Tag of the compact format, version 1, delta coded int array
+    private static final byte COMPACT_INT_V1 = (byte) 0x81;
+    // Same as version 1, followed by the weight
+    private static final byte COMPACT_INT_V2 = (byte) 0x82;
+
     private int id;
     private int[] center;
     private long observations;
+    private long weight = 1L;
 
     private Class<?> centerComponentType = null;
     private Class<?> centerDeclaredComponentType = null;
@@ -86,7 +100,7 @@ public class CanopyWritable implements Writable {
 
 
     public Cluster get() {
-        return new Canopy(id, center, observations);
+        return new Canopy(id, center, observations, weight);
     }
 
     public Class<?> getCenterComponentType() {
@@ -116,6 +130,7 @@ public class CanopyWritable implements Writable {
         // Set cluster
         this.id = cluster.getId();
         this.observations = cluster.getNum();
+        this.weight = cluster.getWeight();
         this.center = (int[]) centerObject;
     }
 
@@ -123,6 +138,13 @@ public class CanopyWritable implements Writable {
     @Override
     public void write(DataOutput out) throws IOException {
 
+        // int centers are always written compact, the legacy format is only
+        // read (see readFields)
+        if (centerComponentType == Integer.TYPE) {
+            writeCompact(out);
+            return;
+        }
+
         out.writeInt(id);
         out.writeLong(observations);
         out.writeUTF(centerComponentType.getName());
@@ -136,8 +158,6 @@ public class CanopyWritable implements Writable {
             writeByteArray(out);
         } else if (centerComponentType == Short.TYPE) {     // short
             writeShortArray(out);
-        } else if (centerComponentType == Integer.TYPE) {   // int
-            writeIntArray(out);
         } else if (centerComponentType == Long.TYPE) {      // long
             writeLongArray(out);
         } else if (centerComponentType == Float.TYPE) {     // float
@@ -153,7 +173,18 @@ public class CanopyWritable implements Writable {
     @Override
     public void readFields(DataInput in) throws IOException {
 
-        this.id = in.readInt();
+        byte tag = in.readByte();
+        if (tag == COMPACT_INT_V1 || tag == COMPACT_INT_V2) {
+            readCompact(in, tag == COMPACT_INT_V2);
+            return;
+        } else if (tag < 0) {
+            throw new IOException("Unknown canopy encoding " + tag);
+        }
+
+        // Legacy format, tag was the highest byte of id
+        this.weight = 1L;
+        this.id = (tag << 24) | (in.readUnsignedByte() << 16)
+                | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
         this.observations = in.readLong();
 
         String className = in.readUTF();
@@ -198,6 +229,46 @@ public class CanopyWritable implements Writable {
         this.center = (int[]) centerObject;
     }
 
+    private void writeCompact(DataOutput out) throws IOException {
+        out.writeByte(weight == 1L ? COMPACT_INT_V1 : COMPACT_INT_V2);
+        WritableUtils.writeVInt(out, id);
+        WritableUtils.writeVLong(out, observations);
+        if (weight != 1L) {
+            WritableUtils.writeVLong(out, weight);
+        }
+        WritableUtils.writeVInt(out, centerLength);
+        int[] v = (int[]) centerObject;
+        long previous = 0L;
+        for (int i = 0; i < centerLength; i++) {
+            // Small for sorted sets, still fits in a long otherwise
+            WritableUtils.writeVLong(out, v[i] - previous);
+            previous = v[i];
+        }
+    }
+
+    private void readCompact(DataInput in, boolean weighted) throws IOException {
+        this.id = WritableUtils.readVInt(in);
+        this.observations = WritableUtils.readVLong(in);
+        this.weight = weighted ? WritableUtils.readVLong(in) : 1L;
+        checkDeclaredComponentType(Integer.TYPE);
+        this.centerComponentType = Integer.TYPE;
+
+        int length = WritableUtils.readVInt(in);
+        if (length < 0) {
+            throw new IOException("encoded array length is negative " + length);
+        }
+        this.centerLength = length;
+
+        int[] v = new int[length];
+        long previous = 0L;
+        for (int i = 0; i < length; i++) {
+            previous += WritableUtils.readVLong(in);
+            v[i] = (int) previous;
+        }
+        this.centerObject = v;
+        this.center = v;
+    }
+
     private void writeBooleanArray(DataOutput out) throws IOException {
         boolean[] v = (boolean[]) centerObject;
         for (int i = 0; i < centerLength; i++) {
@@ -223,13 +294,6 @@ public class CanopyWritable implements Writable {
         }
     }
 
-    private void writeIntArray(DataOutput out) throws IOException {
-        int[] v = (int[]) centerObject;
-        for (int i = 0; i < centerLength; i++) {
-            out.writeInt(v[i]);
-        }
-    }
-
     private void writeLongArray(DataOutput out) throws IOException {
         long[] v = (long[]) centerObject;
         for (int i = 0; i < centerLength; i++) {
@@ -0,0 +1,199 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat binary file of clusters, meant to be memory mapped read-only rather
+ * than deserialized. Layout (big endian):
+ * <p/>
+ * - magic (int), number of clusters n (int), number of center elements (long)
+ * - ids (n ints), observations (n longs)
+ * - offsets of each center within elements (n + 1 ints)
+ * - elements of all centers (ints)
+ * <p/>
+ * Centers are read with absolute gets, so that a store can be shared by
+ * threads and indexed in place (see ClusterCenters).
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CenterStore implements ClusterCenters {
+
+    // Name of the store within the clusters directory, hidden from input formats
+    public static final String FILE_NAME = "_centers";
+
+    private static final int MAGIC = 0x43535431;
+    private static final int HEADER_SIZE = 16;
+
+    private final int size;
+    private final IntBuffer ids;
+    private final LongBuffer nums;
+    private final IntBuffer offsets;
+    private final IntBuffer elements;
+
+    private CenterStore(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a center store");
+        }
+        size = buffer.getInt(4);
+        long length = buffer.getLong(8);
+        if (size < 0 || length < 0 || HEADER_SIZE + 16L * size + 4L + 4L * length != buffer.capacity()) {
+            throw new IOException("Corrupted center store");
+        }
+        ids = slice(buffer, HEADER_SIZE).asIntBuffer();
+        nums = slice(buffer, HEADER_SIZE + 4 * size).asLongBuffer();
+        offsets = slice(buffer, HEADER_SIZE + 12 * size).asIntBuffer();
+        elements = slice(buffer, HEADER_SIZE + 16 * size + 4).asIntBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        return duplicate.slice();
+    }
+
+    /**
+     * Map a local store file read-only
+     */
+    public static CenterStore map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // Mapping remains valid once the channel is closed
+            return new CenterStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a store from any FileSystem into heap memory
+     */
+    public static CenterStore read(FileSystem fs, Path path) throws IOException {
+        long length = fs.getFileStatus(path).getLen();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Center store " + path + " is too large to be read in memory");
+        }
+        byte[] bytes = new byte[(int) length];
+        InputStream in = fs.open(path);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of center store " + path);
+                }
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+        return new CenterStore(ByteBuffer.wrap(bytes));
+    }
+
+    public static void write(FileSystem fs, Path path, List<Cluster> clusters) throws IOException {
+        long length = 0L;
+        for (Cluster cluster : clusters) {
+            length += cluster.getCenter().length;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Too many center elements for a center store");
+        }
+
+        FSDataOutputStream out = fs.create(path, false);
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(clusters.size());
+            data.writeLong(length);
+            for (Cluster cluster : clusters) {
+                data.writeInt(cluster.getId());
+            }
+            for (Cluster cluster : clusters) {
+                data.writeLong(cluster.getNum());
+            }
+            int offset = 0;
+            data.writeInt(offset);
+            for (Cluster cluster : clusters) {
+                offset += cluster.getCenter().length;
+                data.writeInt(offset);
+            }
+            for (Cluster cluster : clusters) {
+                for (int x : cluster.getCenter()) {
+                    data.writeInt(x);
+                }
+            }
+            data.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getId(int i) {
+        return ids.get(i);
+    }
+
+    @Override
+    public long getNum(int i) {
+        return nums.get(i);
+    }
+
+    @Override
+    public int getCenterLength(int i) {
+        return offsets.get(i + 1) - offsets.get(i);
+    }
+
+    @Override
+    public int[] getCenter(int i, int[] buffer) {
+        int from = offsets.get(i);
+        int length = offsets.get(i + 1) - from;
+        for (int j = 0; j < length; j++) {
+            buffer[j] = elements.get(from + j);
+        }
+        return buffer;
+    }
+
+    @Override
+    public Cluster getCluster(int i) {
+        return new Canopy(getId(i), getCenter(i), getNum(i));
+    }
+
+    /**
+     * Copy center i into a new array
+     */
+    public int[] getCenter(int i) {
+        int from = offsets.get(i);
+        int[] center = new int[offsets.get(i + 1) - from];
+        IntBuffer view = elements.duplicate();
+        view.position(from);
+        view.get(center);
+        return center;
+    }
+
+    public List<Cluster> getClusters() {
+        List<Cluster> clusters = new ArrayList<Cluster>(size);
+        for (int i = 0; i < size; i++) {
+            clusters.add(getCluster(i));
+        }
+        return clusters;
+    }
+}
@@ -0,0 +1,149 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Canopy center used as a shuffle key. Serialized as its length followed by
+ * fixed size elements, so that the registered RawComparator compares
+ * serialized keys without deserializing them. Centers are ordered by length,
+ * then element by element.
+ * <p/>
+ * A center can be set as a slice of a larger array (such as canopies packed
+ * in a CanopyList), in which case it is serialized without being copied. The
+ * array must not change until the key has been written.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CenterWritable implements WritableComparable<CenterWritable> {
+
+    private int[] center;
+    private int offset;
+    private int length;
+
+    static {
+        WritableComparator.define(CenterWritable.class, new Comparator());
+    }
+
+    public CenterWritable() {
+    }
+
+    public CenterWritable(int[] center) {
+        set(center);
+    }
+
+    /**
+     * @return the center, copied out of its array if set as a slice
+     */
+    public int[] get() {
+        if (offset != 0 || length != center.length) {
+            set(Arrays.copyOfRange(center, offset, offset + length));
+        }
+        return center;
+    }
+
+    public void set(int[] center) {
+        set(center, 0, center.length);
+    }
+
+    public void set(int[] array, int offset, int length) {
+        this.center = array;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, length);
+        for (int i = offset; i < offset + length; i++) {
+            out.writeInt(center[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int length = WritableUtils.readVInt(in);
+        if (length < 0) {
+            throw new IOException("encoded array length is negative " + length);
+        }
+        int[] elements = new int[length];
+        for (int i = 0; i < length; i++) {
+            elements[i] = in.readInt();
+        }
+        set(elements);
+    }
+
+    @Override
+    public int compareTo(CenterWritable o) {
+        if (length != o.length) {
+            return length < o.length ? -1 : 1;
+        }
+        for (int i = 0; i < length; i++) {
+            int x1 = center[offset + i];
+            int x2 = o.center[o.offset + i];
+            if (x1 != x2) {
+                return x1 < x2 ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CenterWritable && compareTo((CenterWritable) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        // Same as Arrays.hashCode over the center
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + center[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(get());
+    }
+
+    /**
+     * Compare serialized centers, consistent with compareTo.
+     */
+    public static class Comparator extends WritableComparator {
+
+        public Comparator() {
+            super(CenterWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                int n1 = readVInt(b1, s1);
+                int n2 = readVInt(b2, s2);
+                if (n1 != n2) {
+                    return n1 < n2 ? -1 : 1;
+                }
+                int p1 = s1 + WritableUtils.decodeVIntSize(b1[s1]);
+                int p2 = s2 + WritableUtils.decodeVIntSize(b2[s2]);
+                for (int i = 0; i < n1; i++, p1 += 4, p2 += 4) {
+                    int x1 = readInt(b1, p1);
+                    int x2 = readInt(b2, p2);
+                    if (x1 != x2) {
+                        return x1 < x2 ? -1 : 1;
+                    }
+                }
+                return 0;
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+}
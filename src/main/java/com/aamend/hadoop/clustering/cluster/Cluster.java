@@ -19,12 +19,19 @@ public interface Cluster {
 
     void computeCenter(List<int[]> centers, DistanceMeasure measure);
 
+    void computeCenter(List<int[]> centers, MedoidSelector selector);
+
+    void computeCenter(List<int[]> centers, long[] weights, MedoidSelector selector);
+
     int getId();
 
     int[] getCenter();
 
     long getNum();
 
+    // number of identical points this cluster stands for (see DEDUP)
+    long getWeight();
+
     String asFormattedString();
 
 }
@@ -0,0 +1,48 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import java.util.List;
+
+/**
+ * ClusterCenters over Cluster objects held in memory, centers are returned
+ * without any copy.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class ClusterCenterList implements ClusterCenters {
+
+    private final Cluster[] clusters;
+
+    public ClusterCenterList(List<Cluster> clusters) {
+        this.clusters = clusters.toArray(new Cluster[clusters.size()]);
+    }
+
+    @Override
+    public int size() {
+        return clusters.length;
+    }
+
+    @Override
+    public int getId(int i) {
+        return clusters[i].getId();
+    }
+
+    @Override
+    public long getNum(int i) {
+        return clusters[i].getNum();
+    }
+
+    @Override
+    public int getCenterLength(int i) {
+        return clusters[i].getCenter().length;
+    }
+
+    @Override
+    public int[] getCenter(int i, int[] buffer) {
+        return clusters[i].getCenter();
+    }
+
+    @Override
+    public Cluster getCluster(int i) {
+        return clusters[i];
+    }
+}
@@ -0,0 +1,36 @@
+package com.aamend.hadoop.clustering.cluster;
+
+/**
+ * Read-only sequence of clusters accessed by position, whose centers may
+ * not be held as arrays (e.g. a memory mapped CenterStore). Centers are read
+ * into a caller supplied buffer, so that distances can be computed on slices
+ * (see SliceDistanceMeasure) without allocating anything. Implementations
+ * can be read concurrently.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface ClusterCenters {
+
+    int size();
+
+    int getId(int i);
+
+    long getNum(int i);
+
+    int getCenterLength(int i);
+
+    /**
+     * @param i      the cluster position
+     * @param buffer an array of at least getCenterLength(i) elements
+     * @return an array whose first getCenterLength(i) elements are the center
+     * of cluster i, either buffer or an array backing the center, which must
+     * not be modified
+     */
+    int[] getCenter(int i, int[] buffer);
+
+    /**
+     * @return cluster i, built on demand if not held as a Cluster
+     */
+    Cluster getCluster(int i);
+
+}
@@ -0,0 +1,134 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Key of a deduplicated point (see DEDUP): the number of identical input
+ * points it stands for and, when kept, their original keys. Keys are
+ * written after the name of their class, all keys of a same point being of
+ * the same class (same input).
+ * <p/>
+ * As a point may have any number of duplicates, the keys of a same point
+ * are split across several records of at most MAX_KEYS_CONF keys each, each
+ * record counting the duplicates of its own keys.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class DuplicatesWritable implements WritableComparable<DuplicatesWritable> {
+
+    public static final String MAX_KEYS_CONF = "cluster.dedup.keys.max";
+    public static final int DEFAULT_MAX_KEYS = 10000;
+
+    private long count;
+    private final List<Writable> keys = new ArrayList<Writable>();
+
+    public DuplicatesWritable() {
+    }
+
+    /**
+     * @param key the original key of a point, null if not kept
+     */
+    public DuplicatesWritable(Writable key) {
+        this.count = 1L;
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Account for the duplicates of other, and keep its keys. Keys are added
+     * by reference, other must not be reused while this record is held.
+     */
+    public void add(DuplicatesWritable other) {
+        count += other.count;
+        keys.addAll(other.keys);
+    }
+
+    /**
+     * @param other   the duplicates to add
+     * @param maxKeys the maximum number of keys of a record
+     * @return false if adding other would exceed maxKeys, in which case this
+     * record must be written first
+     */
+    public boolean fits(DuplicatesWritable other, int maxKeys) {
+        return keys.isEmpty() || keys.size() + other.keys.size() <= maxKeys;
+    }
+
+    public void clear() {
+        count = 0L;
+        keys.clear();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the original keys, empty if not kept
+     */
+    public List<Writable> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, count);
+        WritableUtils.writeVInt(out, keys.size());
+        if (!keys.isEmpty()) {
+            out.writeUTF(keys.get(0).getClass().getName());
+            for (Writable key : keys) {
+                key.write(out);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        // Keys are new instances, they may have been kept by add
+        keys.clear();
+        count = WritableUtils.readVLong(in);
+        int size = WritableUtils.readVInt(in);
+        if (size > 0) {
+            Class<? extends Writable> keyClass;
+            try {
+                keyClass = Class.forName(in.readUTF()).asSubclass(Writable.class);
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            for (int i = 0; i < size; i++) {
+                Writable key = ReflectionUtils.newInstance(keyClass, null);
+                key.readFields(in);
+                keys.add(key);
+            }
+        }
+    }
+
+    @Override
+    public int compareTo(DuplicatesWritable o) {
+        return count < o.count ? -1 : (count > o.count ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DuplicatesWritable && compareTo((DuplicatesWritable) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (count ^ (count >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return count + " " + keys;
+    }
+}
@@ -0,0 +1,149 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.InstrumentedDistanceMeasure;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics of a map or reduce task, reported as Hadoop counters (COUNTER
+ * group) when INSTRUMENT is set, and ignored otherwise:
+ * <p/>
+ * - calls, early exits and time spent in distance measures (see
+ * InstrumentedDistanceMeasure), summed over all the measures of the task
+ * - histograms of canopy sizes and center computation durations, one counter
+ * per power of 4 bucket (e.g. canopy.size.le.16 for 5 to 16 points)
+ * <p/>
+ * Date: 17/10/26
+ */
+public class Instrumentation {
+
+    public static final String COUNTER = "instrumentation";
+    public static final String COUNTER_DISTANCE_CALLS = "distance.calls";
+    public static final String COUNTER_DISTANCE_EARLY_EXITS = "distance.early.exits";
+    public static final String COUNTER_DISTANCE_NANOS = "distance.nanos";
+    public static final String COUNTER_CENTERS = "center.computations";
+    public static final String COUNTER_CENTER_NANOS = "center.nanos";
+    public static final String HISTOGRAM_CANOPY_SIZE = "canopy.size";
+    public static final String HISTOGRAM_CENTER_MICROS = "center.micros";
+
+    private static final int BUCKETS = 16;
+
+    private final boolean enabled;
+    private final List<InstrumentedDistanceMeasure> measures = new ArrayList<InstrumentedDistanceMeasure>();
+    private final long[] canopySizes = new long[BUCKETS + 1];
+    private final long[] centerMicros = new long[BUCKETS + 1];
+    private long centers;
+    private long centerNanos;
+
+    public Instrumentation(Configuration conf) {
+        this.enabled = conf.getBoolean(Canopy.INSTRUMENT, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Same as Canopy.configureMeasure, the measure being instrumented if
+     * enabled. May be called by any thread of the task.
+     */
+    public DistanceMeasure configureMeasure(Configuration conf) throws IOException {
+        DistanceMeasure measure = Canopy.configureMeasure(conf);
+        if (!enabled) {
+            return measure;
+        }
+        InstrumentedDistanceMeasure instrumented = InstrumentedDistanceMeasure.wrap(measure);
+        synchronized (measures) {
+            measures.add(instrumented);
+        }
+        return instrumented;
+    }
+
+    /**
+     * @param points the number of points of a canopy
+     */
+    public void canopySize(long points) {
+        if (enabled) {
+            synchronized (this) {
+                canopySizes[bucket(points)]++;
+            }
+        }
+    }
+
+    /**
+     * @return the start time of a center computation, see centerComputed
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * @param start the value returned by start when center computation started
+     */
+    public void centerComputed(long start) {
+        if (enabled) {
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                centers++;
+                centerNanos += elapsed;
+                centerMicros[bucket(elapsed / 1000L)]++;
+            }
+        }
+    }
+
+    /**
+     * Add metrics to the task counters, once all threads of the task are done
+     */
+    public synchronized void report(TaskInputOutputContext<?, ?, ?, ?> context) {
+
+        if (!enabled) {
+            return;
+        }
+
+        long calls = 0L;
+        long earlyExits = 0L;
+        long nanos = 0L;
+        synchronized (measures) {
+            for (InstrumentedDistanceMeasure measure : measures) {
+                calls += measure.getCalls();
+                earlyExits += measure.getEarlyExits();
+                nanos += measure.getNanos();
+            }
+        }
+        context.getCounter(COUNTER, COUNTER_DISTANCE_CALLS).increment(calls);
+        context.getCounter(COUNTER, COUNTER_DISTANCE_EARLY_EXITS).increment(earlyExits);
+        context.getCounter(COUNTER, COUNTER_DISTANCE_NANOS).increment(nanos);
+        context.getCounter(COUNTER, COUNTER_CENTERS).increment(centers);
+        context.getCounter(COUNTER, COUNTER_CENTER_NANOS).increment(centerNanos);
+        for (int b = 0; b <= BUCKETS; b++) {
+            if (canopySizes[b] > 0) {
+                context.getCounter(COUNTER, bucketName(HISTOGRAM_CANOPY_SIZE, b)).increment(canopySizes[b]);
+            }
+            if (centerMicros[b] > 0) {
+                context.getCounter(COUNTER, bucketName(HISTOGRAM_CENTER_MICROS, b)).increment(centerMicros[b]);
+            }
+        }
+    }
+
+    static int bucket(long value) {
+        int b = 0;
+        long bound = 1L;
+        while (b < BUCKETS && value > bound) {
+            bound <<= 2;
+            b++;
+        }
+        return b;
+    }
+
+    static String bucketName(String histogram, int b) {
+        if (b < BUCKETS) {
+            return histogram + ".le." + (1L << (2 * b));
+        }
+        return histogram + ".gt." + (1L << (2 * (BUCKETS - 1)));
+    }
+}
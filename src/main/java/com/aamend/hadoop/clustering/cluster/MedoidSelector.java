@@ -0,0 +1,301 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Select the point minimizing the average distance to all other points.
+ * Up to MEDOID_EXACT_MAX points, all pairs of distances are computed. Above,
+ * the medoid is approximated CLARA-style: the exact medoid of each of
+ * MEDOID_SAMPLES random samples of MEDOID_SAMPLE_SIZE points is a candidate,
+ * and the candidate with the smallest distance to all points is returned,
+ * which bounds the number of distances to
+ * samples * (sampleSize^2 + points).
+ * <p/>
+ * Average distances can be computed by MEDOID_THREADS threads, each of them
+ * evaluating a block of rows with its own DistanceMeasure instance (measures
+ * may hold state). Selected medoid does not depend on the number of threads.
+ * Points may be weighted by their number of duplicates (see DEDUP), each
+ * point then standing for that many identical points.
+ * Call close once done to release threads.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class MedoidSelector {
+
+    // Do not bother with threads below that many points
+    private static final int MIN_PARALLEL_POINTS = 64;
+
+    private final DistanceMeasure measure;
+    private final int exactMax;
+    private final int sampleSize;
+    private final int samples;
+
+    // One measure per thread, null when single threaded
+    private final DistanceMeasure[] measures;
+    private final ExecutorService executor;
+
+    /**
+     * Exact medoid, whatever the number of points
+     */
+    public MedoidSelector(DistanceMeasure measure) {
+        this.measure = measure;
+        this.exactMax = Integer.MAX_VALUE;
+        this.sampleSize = 0;
+        this.samples = 0;
+        this.measures = null;
+        this.executor = null;
+    }
+
+    public MedoidSelector(Configuration conf, DistanceMeasure measure) throws IOException {
+        this(conf, measure, null);
+    }
+
+    /**
+     * @param instrumentation the Instrumentation of the task, used to
+     *                        configure the measures of each thread
+     */
+    public MedoidSelector(Configuration conf, DistanceMeasure measure, Instrumentation instrumentation)
+            throws IOException {
+        this.measure = measure;
+        this.exactMax = conf.getInt(Canopy.MEDOID_EXACT_MAX, 2000);
+        this.sampleSize = conf.getInt(Canopy.MEDOID_SAMPLE_SIZE, 200);
+        this.samples = conf.getInt(Canopy.MEDOID_SAMPLES, 5);
+        if (sampleSize < 1 || samples < 1) {
+            throw new IllegalArgumentException("Medoid sample size and number of samples " +
+                    "must be greater or equals to 1");
+        }
+
+        int threads = conf.getInt(Canopy.MEDOID_THREADS, 1);
+        if (threads > 1) {
+            measures = new DistanceMeasure[threads];
+            for (int i = 0; i < threads; i++) {
+                measures[i] = instrumentation == null ?
+                        Canopy.configureMeasure(conf) : instrumentation.configureMeasure(conf);
+            }
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "medoid-selector");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            measures = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @param points the points to select the medoid from
+     * @return the position of the medoid
+     */
+    public int select(List<int[]> points) {
+        return select(points, null);
+    }
+
+    /**
+     * @param points  the points to select the medoid from
+     * @param weights the weight of each point, null if all points weigh 1
+     * @return the position of the medoid
+     */
+    public int select(List<int[]> points, long[] weights) {
+        if (points.size() <= exactMax || points.size() <= sampleSize) {
+            return exactMedoid(points, weights);
+        } else {
+            return sampledMedoid(points, weights);
+        }
+    }
+
+    private int exactMedoid(List<int[]> points, long[] weights) {
+
+        if (points.size() <= 1) {
+            return 0;
+        }
+
+        double[] averages = new double[points.size()];
+        if (executor == null || points.size() < MIN_PARALLEL_POINTS) {
+            averageDistances(points, weights, averages, 0, points.size(), measure);
+        } else {
+            parallelAverageDistances(points, weights, averages);
+        }
+        return argMin(averages);
+    }
+
+    private void parallelAverageDistances(final List<int[]> points, final long[] weights,
+                                          final double[] averages) {
+
+        // Contiguous blocks of rows, one per thread and measure
+        List<Future<?>> futures = new ArrayList<Future<?>>(measures.length);
+        for (int b = 0; b < measures.length; b++) {
+            final int from = (int) ((long) points.size() * b / measures.length);
+            final int to = (int) ((long) points.size() * (b + 1) / measures.length);
+            final DistanceMeasure blockMeasure = measures[b];
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    averageDistances(points, weights, averages, from, to, blockMeasure);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing medoid", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not compute medoid", e.getCause());
+        }
+    }
+
+    private static void averageDistances(List<int[]> points, long[] weights, double[] averages,
+                                         int from, int to, DistanceMeasure measure) {
+        // Duplicates of a point are at distance 0 from that point
+        double others = totalWeight(points.size(), weights) - 1;
+        for (int i = from; i < to; i++) {
+            averages[i] = averageDistance(points, weights, i, measure) / others;
+        }
+    }
+
+    private static double averageDistance(List<int[]> points, long[] weights, int i,
+                                          DistanceMeasure measure) {
+        double average = 0.0d;
+        // Consider center i
+        // Compute distance to other points
+        for (int j = 0; j < points.size(); j++) {
+            if (j != i) {
+                average += weight(weights, j) * measure.distance(points.get(i), points.get(j));
+            }
+        }
+        return average;
+    }
+
+    private static long weight(long[] weights, int i) {
+        return weights == null ? 1L : weights[i];
+    }
+
+    private static double totalWeight(int size, long[] weights) {
+        if (weights == null) {
+            return size;
+        }
+        double total = 0.0d;
+        for (int i = 0; i < size; i++) {
+            total += weights[i];
+        }
+        return total;
+    }
+
+    private int sampledMedoid(List<int[]> points, long[] weights) {
+
+        // Same points are always sampled the same way
+        Random random = new Random(points.size());
+        int[] positions = new int[points.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+
+        int best = 0;
+        double bestCost = Double.MAX_VALUE;
+        boolean[] evaluated = new boolean[points.size()];
+        List<int[]> sample = new SampleList(points, positions, sampleSize);
+        long[] sampleWeights = weights == null ? null : new long[sampleSize];
+        for (int s = 0; s < samples; s++) {
+
+            // Partial Fisher-Yates shuffle, sample is the head of positions
+            for (int i = 0; i < sampleSize; i++) {
+                int j = i + random.nextInt(positions.length - i);
+                int p = positions[i];
+                positions[i] = positions[j];
+                positions[j] = p;
+            }
+
+            if (sampleWeights != null) {
+                for (int i = 0; i < sampleSize; i++) {
+                    sampleWeights[i] = weights[positions[i]];
+                }
+            }
+
+            int candidate = positions[exactMedoid(sample, sampleWeights)];
+            if (evaluated[candidate]) {
+                continue;
+            }
+            evaluated[candidate] = true;
+
+            // Distances are positive, give up as soon as best cost is exceeded
+            double cost = 0.0d;
+            int[] center = points.get(candidate);
+            for (int j = 0; j < points.size() && cost <= bestCost; j++) {
+                if (j != candidate) {
+                    cost += weight(weights, j) * measure.distance(center, points.get(j));
+                }
+            }
+            if (cost < bestCost || (cost == bestCost && candidate < best)) {
+                bestCost = cost;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Release threads, if any
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int argMin(double[] values) {
+        double min = Double.MAX_VALUE;
+        int minIdx = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < min) {
+                min = values[i];
+                minIdx = i;
+            }
+        }
+        return minIdx;
+    }
+
+    /**
+     * Points at the first positions, without copying them
+     */
+    private static class SampleList extends AbstractList<int[]> {
+
+        private final List<int[]> points;
+        private final int[] positions;
+        private final int size;
+
+        private SampleList(List<int[]> points, int[] positions, int size) {
+            this.points = points;
+            this.positions = positions;
+            this.size = size;
+        }
+
+        @Override
+        public int[] get(int index) {
+            return points.get(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
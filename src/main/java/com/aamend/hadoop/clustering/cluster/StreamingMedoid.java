@@ -0,0 +1,129 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+
+import java.util.Random;
+
+/**
+ * Approximate the medoid of a stream of points without keeping them all.
+ * A uniform reservoir of at most capacity points is kept as candidates, and
+ * every new point is compared with each candidate. A candidate entering the
+ * reservoir is first compared with the other candidates, so that its average
+ * distance is known from the beginning. Memory is bounded by capacity, and
+ * the number of distances by capacity per point.
+ * <p/>
+ * Up to capacity points, every candidate is compared with every other point
+ * in the same order as MedoidSelector, hence the same (exact) medoid.
+ * Points may be weighted by their number of duplicates (see DEDUP), the
+ * reservoir still sampling distinct points uniformly.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class StreamingMedoid {
+
+    private final DistanceMeasure measure;
+    private final int[][] candidates;
+    private final double[] sums;
+    private final long[] counts;
+    private final long[] weights;
+    private Random random;
+    private int size;
+    private long seen;
+
+    public StreamingMedoid(DistanceMeasure measure, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater or equals to 1");
+        }
+        this.measure = measure;
+        this.candidates = new int[capacity][];
+        this.sums = new double[capacity];
+        this.counts = new long[capacity];
+        this.weights = new long[capacity];
+        reset(0L);
+    }
+
+    /**
+     * Forget all points observed so far
+     *
+     * @param seed the seed of the reservoir sampling
+     */
+    public void reset(long seed) {
+        for (int i = 0; i < size; i++) {
+            candidates[i] = null;
+        }
+        random = new Random(seed);
+        size = 0;
+        seen = 0L;
+    }
+
+    public void observe(int[] point) {
+        observe(point, 1L);
+    }
+
+    /**
+     * @param point  the point
+     * @param weight the number of identical points it stands for
+     */
+    public void observe(int[] point, long weight) {
+
+        int slot;
+        if (size < candidates.length) {
+            slot = size++;
+        } else {
+            long r = (long) (random.nextDouble() * (seen + 1));
+            slot = r < candidates.length ? (int) r : -1;
+        }
+        seen++;
+
+        // Existing candidates, incl. the one about to be replaced
+        for (int j = 0; j < size; j++) {
+            if (j != slot) {
+                sums[j] += weight * measure.distance(candidates[j], point);
+                counts[j] += weight;
+            }
+        }
+
+        if (slot >= 0) {
+            double sum = 0.0d;
+            // Duplicates of the point are at distance 0 from it
+            long count = weight - 1;
+            for (int j = 0; j < size; j++) {
+                if (j != slot) {
+                    sum += weights[j] * measure.distance(point, candidates[j]);
+                    count += weights[j];
+                }
+            }
+            candidates[slot] = point;
+            weights[slot] = weight;
+            sums[slot] = sum;
+            counts[slot] = count;
+        }
+    }
+
+    /**
+     * @return the candidate with the smallest average distance, null if no
+     * point has been observed
+     */
+    public int[] getMedoid() {
+        if (size == 0) {
+            return null;
+        }
+        double min = Double.MAX_VALUE;
+        int minIdx = 0;
+        for (int i = 0; i < size; i++) {
+            double average = counts[i] == 0 ? 0.0d : sums[i] / counts[i];
+            if (average < min) {
+                min = average;
+                minIdx = i;
+            }
+        }
+        return candidates[minIdx];
+    }
+
+    /**
+     * @return the number of points observed so far
+     */
+    public long getSeen() {
+        return seen;
+    }
+}
@@ -0,0 +1,265 @@
+package com.aamend.hadoop.clustering.distance;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein distance computed with the bit-vector algorithm of Myers
+ * (as reformulated by Hyyro) over an integer alphabet. The shortest sequence
+ * is encoded as a set of 64 bits blocks (one bitmask per distinct symbol),
+ * so that a whole column of the DP matrix is computed in a few word
+ * operations. Sequences of up to 64 integers fit in a single block.
+ * <p/>
+ * Returns the same normalized distance as LevenshteinDistanceMeasure, and
+ * honors the same Canopy.MAX_DISTANCE cutoff (1.0 is returned as soon as the
+ * distance is known to exceed the threshold).
+ * <p/>
+ * Date: 17/10/26
+ */
+public class BitParallelLevenshteinDistanceMeasure
+        implements SliceDistanceMeasure, EditDistanceMeasure {
+
+    private static final int WORD = 64;
+    private static final long HIGH_BIT = 1L << (WORD - 1);
+
+    private float maxLevDistance;
+
+    // Symbol -> bitmask table of the current pattern (open addressing).
+    // Slots are only valid when stamped with the current generation so that
+    // the table never needs to be cleared between two calls.
+    private int[] keys = new int[16];
+    private int[] stamps = new int[16];
+    private int[] symbols = new int[16];
+    private int generation;
+
+    // Bitmasks per symbol and block, and per block vertical deltas
+    private long[] peq = new long[16];
+    private long[] pv = new long[1];
+    private long[] mv = new long[1];
+
+    private int getDistance(int[] pattern, int pOffset, int m,
+                            int[] text, int tOffset, int n, float threshold) {
+
+        final int blocks = (m + WORD - 1) / WORD;
+        final long lastBit = 1L << ((m - 1) % WORD);
+
+        buildPeq(pattern, pOffset, m, blocks);
+
+        int score = m;
+        if (blocks == 1) {
+
+            // Single word, the most common case
+            long vp = -1L;
+            long vn = 0L;
+            for (int j = 0; j < n; j++) {
+                final long eq = peq(text[tOffset + j], 0, 1);
+                final long xv = eq | vn;
+                final long xh = (((eq & vp) + vp) ^ vp) | eq;
+                long hp = vn | ~(xh | vp);
+                long hn = vp & xh;
+                if ((hp & lastBit) != 0) {
+                    score++;
+                } else if ((hn & lastBit) != 0) {
+                    score--;
+                }
+                if (score - (n - j - 1) > threshold) {
+                    // remaining columns cannot bring it back below threshold
+                    return -1;
+                }
+                hp = (hp << 1) | 1L;
+                hn = hn << 1;
+                vp = hn | ~(xv | hp);
+                vn = hp & xv;
+            }
+            return score;
+        }
+
+        if (pv.length < blocks) {
+            pv = new long[blocks];
+            mv = new long[blocks];
+        }
+        for (int b = 0; b < blocks; b++) {
+            pv[b] = -1L;
+            mv[b] = 0L;
+        }
+
+        for (int j = 0; j < n; j++) {
+            final int c = text[tOffset + j];
+            // horizontal delta entering the top block (first row is 0..n)
+            int h = 1;
+            for (int b = 0; b < blocks; b++) {
+                final long high = b == blocks - 1 ? lastBit : HIGH_BIT;
+                long eq = peq(c, b, blocks);
+                final long vp = pv[b];
+                final long vn = mv[b];
+                final long xv = eq | vn;
+                if (h < 0) {
+                    eq |= 1L;
+                }
+                final long xh = (((eq & vp) + vp) ^ vp) | eq;
+                long hp = vn | ~(xh | vp);
+                long hn = vp & xh;
+                final int hOut = (hp & high) != 0 ? 1 : (hn & high) != 0 ? -1 : 0;
+                hp <<= 1;
+                hn <<= 1;
+                if (h < 0) {
+                    hn |= 1L;
+                } else if (h > 0) {
+                    hp |= 1L;
+                }
+                pv[b] = hn | ~(xv | hp);
+                mv[b] = hp & xv;
+                h = hOut;
+            }
+            score += h;
+            if (score - (n - j - 1) > threshold) {
+                return -1;
+            }
+        }
+        return score;
+    }
+
+    private void buildPeq(int[] pattern, int offset, int length, int blocks) {
+
+        int capacity = keys.length;
+        if (capacity < length * 2) {
+            while (capacity < length * 2) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            stamps = new int[capacity];
+            symbols = new int[capacity];
+            generation = 0;
+        }
+
+        if (++generation == 0) {
+            // stamps wrapped around, start afresh
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+
+        if (peq.length < length * blocks) {
+            peq = new long[length * blocks];
+        }
+
+        int distinct = 0;
+        final int mask = capacity - 1;
+        for (int i = 0; i < length; i++) {
+            final int c = pattern[offset + i];
+            int slot = hash(c) & mask;
+            while (stamps[slot] == generation && keys[slot] != c) {
+                slot = (slot + 1) & mask;
+            }
+            if (stamps[slot] != generation) {
+                stamps[slot] = generation;
+                keys[slot] = c;
+                symbols[slot] = distinct;
+                for (int b = 0; b < blocks; b++) {
+                    peq[distinct * blocks + b] = 0L;
+                }
+                distinct++;
+            }
+            peq[symbols[slot] * blocks + i / WORD] |= 1L << (i % WORD);
+        }
+    }
+
+    private long peq(int c, int block, int blocks) {
+        final int mask = keys.length - 1;
+        int slot = hash(c) & mask;
+        while (stamps[slot] == generation) {
+            if (keys[slot] == c) {
+                return peq[symbols[slot] * blocks + block];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    private static int hash(int c) {
+        final int h = c * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public double distance(int[] seq1, int[] seq2) {
+        // Compute threshold
+        int maxDistance = Math.max(seq1.length, seq2.length);
+        float threshold = maxDistance * maxLevDistance;
+        // Compute normalized distance
+        return getNormalizedDistance(seq1, 0, seq1.length, seq2, 0, seq2.length, threshold);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int[] seq2, double bound) {
+        return distanceWithin(seq1, 0, seq1.length, seq2, 0, seq2.length, bound);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int offset1, int length1,
+                                 int[] seq2, int offset2, int length2, double bound) {
+        // Compute threshold, the tightest of both max distance and bound
+        int maxDistance = Math.max(length1, length2);
+        float threshold = Math.min(maxDistance * maxLevDistance,
+                Math.nextUp((float) (maxDistance * bound)));
+        // Compute normalized distance
+        return getNormalizedDistance(seq1, offset1, length1, seq2, offset2, length2, threshold);
+    }
+
+    private double getNormalizedDistance(int[] seq1, int offset1, int length1,
+                                         int[] seq2, int offset2, int length2, float threshold) {
+
+        if (seq1 == null || seq2 == null) {
+            throw new IllegalArgumentException("Array must not be null");
+        }
+
+        int maxDistance = Math.max(length1, length2);
+        if (maxDistance == 0) {
+            return 0.0d;
+        }
+
+        // Edit distance is at least the length difference
+        if (Math.abs(length1 - length2) > threshold) {
+            return 1.0d;
+        }
+
+        // Encode the shortest sequence as bit vectors
+        int lev;
+        if (length1 <= length2) {
+            lev = length1 == 0 ? length2 : getDistance(seq1, offset1, length1, seq2, offset2, length2, threshold);
+        } else {
+            lev = length2 == 0 ? length1 : getDistance(seq2, offset2, length2, seq1, offset1, length1, threshold);
+        }
+
+        if (lev < 0 || lev > threshold) {
+            return 1.0d;
+        }
+        return (double) lev / maxDistance;
+    }
+
+    @Override
+    public int editDistance(int[] seq1, int[] seq2, int maxDistance) {
+        return editDistance(seq1, 0, seq1.length, seq2, 0, seq2.length, maxDistance);
+    }
+
+    @Override
+    public int editDistance(int[] seq1, int offset1, int length1,
+                            int[] seq2, int offset2, int length2, int maxDistance) {
+        if (Math.abs(length1 - length2) > maxDistance) {
+            return Integer.MAX_VALUE;
+        }
+        int lev;
+        if (length1 <= length2) {
+            lev = length1 == 0 ? length2 : getDistance(seq1, offset1, length1, seq2, offset2, length2, maxDistance);
+        } else {
+            lev = length2 == 0 ? length1 : getDistance(seq2, offset2, length2, seq1, offset1, length1, maxDistance);
+        }
+        return lev >= 0 ? lev : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void configure(Configuration conf) {
+        maxLevDistance = conf.getFloat(Canopy.MAX_DISTANCE, 1.0f);
+    }
+}
@@ -0,0 +1,21 @@
+package com.aamend.hadoop.clustering.distance;
+
+/**
+ * DistanceMeasure able to give up as soon as the distance between two points
+ * is known to exceed a bound. Useful when the caller only needs to know
+ * whether a point is within T1 / T2 or closer than the best match so far.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface BoundedDistanceMeasure extends DistanceMeasure {
+
+    /**
+     * @param seq1  the first point
+     * @param seq2  the second point
+     * @param bound the maximum distance the caller is interested in
+     * @return the same value as distance(seq1, seq2) if this one does not
+     * exceed bound, any value greater than bound otherwise
+     */
+    double distanceWithin(int[] seq1, int[] seq2, double bound);
+
+}
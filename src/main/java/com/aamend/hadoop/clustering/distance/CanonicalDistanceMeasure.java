@@ -0,0 +1,19 @@
+package com.aamend.hadoop.clustering.distance;
+
+/**
+ * DistanceMeasure working on points in a canonical form (e.g. sorted sets).
+ * Points are canonicalized once when read from input so that distance
+ * computation can rely on that form without copying or rebuilding anything.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface CanonicalDistanceMeasure extends DistanceMeasure {
+
+    /**
+     * @param point the raw input point
+     * @return the canonical form of the point, the point itself if already
+     * canonical
+     */
+    int[] canonicalize(int[] point);
+
+}
@@ -0,0 +1,86 @@
+package com.aamend.hadoop.clustering.distance;
+
+import java.util.Arrays;
+
+/**
+ * Helpers dispatching to the optional capabilities a DistanceMeasure may
+ * implement, falling back to plain DistanceMeasure behavior otherwise.
+ * <p/>
+ * Date: 17/10/26
+ */
+public final class DistanceMeasures {
+
+    private DistanceMeasures() {
+    }
+
+    /**
+     * @param measure the DistanceMeasure, possibly instrumented
+     * @return the actual DistanceMeasure
+     */
+    public static DistanceMeasure unwrap(DistanceMeasure measure) {
+        if (measure instanceof InstrumentedDistanceMeasure) {
+            return ((InstrumentedDistanceMeasure) measure).getDelegate();
+        }
+        return measure;
+    }
+
+    /**
+     * @param measure the DistanceMeasure
+     * @param point   the raw input point
+     * @return the point as expected by this measure
+     */
+    public static int[] canonicalize(DistanceMeasure measure, int[] point) {
+        if (measure instanceof CanonicalDistanceMeasure) {
+            return ((CanonicalDistanceMeasure) measure).canonicalize(point);
+        }
+        return point;
+    }
+
+    /**
+     * @param measure the DistanceMeasure
+     * @param seq1    the first point
+     * @param seq2    the second point
+     * @param bound   the maximum distance the caller is interested in
+     * @return the distance if it does not exceed bound, any value greater
+     * than bound otherwise
+     */
+    public static double distanceWithin(DistanceMeasure measure, int[] seq1,
+                                        int[] seq2, double bound) {
+        if (measure instanceof BoundedDistanceMeasure) {
+            return ((BoundedDistanceMeasure) measure).distanceWithin(seq1, seq2, bound);
+        }
+        return measure.distance(seq1, seq2);
+    }
+
+    /**
+     * Same as distanceWithin on slices of arrays, only copied if measure is
+     * not a SliceDistanceMeasure.
+     *
+     * @param measure the DistanceMeasure
+     * @param seq1    the array holding the first point
+     * @param offset1 the position of the first point in seq1
+     * @param length1 the length of the first point
+     * @param seq2    the array holding the second point
+     * @param offset2 the position of the second point in seq2
+     * @param length2 the length of the second point
+     * @param bound   the maximum distance the caller is interested in
+     * @return the distance if it does not exceed bound, any value greater
+     * than bound otherwise
+     */
+    public static double distanceWithin(DistanceMeasure measure, int[] seq1, int offset1, int length1,
+                                        int[] seq2, int offset2, int length2, double bound) {
+        if (measure instanceof SliceDistanceMeasure) {
+            return ((SliceDistanceMeasure) measure).distanceWithin(seq1, offset1, length1,
+                    seq2, offset2, length2, bound);
+        }
+        return distanceWithin(measure, slice(seq1, offset1, length1), slice(seq2, offset2, length2), bound);
+    }
+
+    private static int[] slice(int[] seq, int offset, int length) {
+        if (offset == 0 && length == seq.length) {
+            return seq;
+        }
+        return Arrays.copyOfRange(seq, offset, offset + length);
+    }
+
+}
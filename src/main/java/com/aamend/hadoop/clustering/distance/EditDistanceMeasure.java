@@ -0,0 +1,27 @@
+package com.aamend.hadoop.clustering.distance;
+
+/**
+ * DistanceMeasure derived from an integer edit distance. Whereas the
+ * normalized distance is not a metric, the raw edit distance is, which
+ * allows indexing points in a BK-tree.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface EditDistanceMeasure extends DistanceMeasure {
+
+    /**
+     * @param seq1        the first point
+     * @param seq2        the second point
+     * @param maxDistance the maximum edit distance the caller is interested in
+     * @return the number of edits between both points if it does not exceed
+     * maxDistance, any value greater than maxDistance otherwise
+     */
+    int editDistance(int[] seq1, int[] seq2, int maxDistance);
+
+    /**
+     * Same as editDistance on slices of arrays (see SliceDistanceMeasure)
+     */
+    int editDistance(int[] seq1, int offset1, int length1,
+                     int[] seq2, int offset2, int length2, int maxDistance);
+
+}
@@ -0,0 +1,166 @@
+package com.aamend.hadoop.clustering.distance;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * DistanceMeasure counting the calls to, early exits of and time spent in
+ * the measure it wraps. Implements the same capabilities as the wrapped
+ * measure (see wrap), so that indexes are chosen the same way. Counters are
+ * not synchronized, an instance must not be shared by threads (same as most
+ * measures).
+ * <p/>
+ * Date: 17/10/26
+ */
+public class InstrumentedDistanceMeasure
+        implements SliceDistanceMeasure, CanonicalDistanceMeasure {
+
+    protected final DistanceMeasure delegate;
+    // Only bounded measures give up early, others compute every distance
+    // in full whatever the bound
+    private final boolean bounded;
+    protected long calls;
+    protected long earlyExits;
+    protected long nanos;
+
+    protected InstrumentedDistanceMeasure(DistanceMeasure delegate) {
+        this.delegate = delegate;
+        this.bounded = delegate instanceof BoundedDistanceMeasure;
+    }
+
+    /**
+     * @param delegate the measure to instrument
+     * @return an instrumented measure that is an EditDistanceMeasure and / or
+     * a MetricDistanceMeasure if delegate is
+     */
+    public static InstrumentedDistanceMeasure wrap(DistanceMeasure delegate) {
+        boolean edit = delegate instanceof EditDistanceMeasure;
+        boolean metric = delegate instanceof MetricDistanceMeasure;
+        if (edit && metric) {
+            return new EditMetric(delegate);
+        } else if (edit) {
+            return new Edit(delegate);
+        } else if (metric) {
+            return new Metric(delegate);
+        }
+        return new InstrumentedDistanceMeasure(delegate);
+    }
+
+    @Override
+    public double distance(int[] seq1, int[] seq2) {
+        long start = System.nanoTime();
+        double distance = delegate.distance(seq1, seq2);
+        nanos += System.nanoTime() - start;
+        calls++;
+        return distance;
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int[] seq2, double bound) {
+        long start = System.nanoTime();
+        double distance = DistanceMeasures.distanceWithin(delegate, seq1, seq2, bound);
+        nanos += System.nanoTime() - start;
+        calls++;
+        if (bounded && distance > bound) {
+            earlyExits++;
+        }
+        return distance;
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int offset1, int length1,
+                                 int[] seq2, int offset2, int length2, double bound) {
+        long start = System.nanoTime();
+        double distance = DistanceMeasures.distanceWithin(delegate, seq1, offset1, length1,
+                seq2, offset2, length2, bound);
+        nanos += System.nanoTime() - start;
+        calls++;
+        if (bounded && distance > bound) {
+            earlyExits++;
+        }
+        return distance;
+    }
+
+    @Override
+    public int[] canonicalize(int[] point) {
+        return DistanceMeasures.canonicalize(delegate, point);
+    }
+
+    @Override
+    public void configure(Configuration conf) {
+        delegate.configure(conf);
+    }
+
+    public DistanceMeasure getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the number of distances computed
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the number of bounded distances found to exceed their bound,
+     * always 0 if the wrapped measure is not bounded (it then computes every
+     * distance in full)
+     */
+    public long getEarlyExits() {
+        return earlyExits;
+    }
+
+    /**
+     * @return the time spent computing distances
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    private static class Edit extends InstrumentedDistanceMeasure implements EditDistanceMeasure {
+
+        private Edit(DistanceMeasure delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public int editDistance(int[] seq1, int[] seq2, int maxDistance) {
+            long start = System.nanoTime();
+            int distance = ((EditDistanceMeasure) delegate).editDistance(seq1, seq2, maxDistance);
+            nanos += System.nanoTime() - start;
+            calls++;
+            if (distance > maxDistance) {
+                earlyExits++;
+            }
+            return distance;
+        }
+
+        @Override
+        public int editDistance(int[] seq1, int offset1, int length1,
+                                int[] seq2, int offset2, int length2, int maxDistance) {
+            long start = System.nanoTime();
+            int distance = ((EditDistanceMeasure) delegate).editDistance(seq1, offset1, length1,
+                    seq2, offset2, length2, maxDistance);
+            nanos += System.nanoTime() - start;
+            calls++;
+            if (distance > maxDistance) {
+                earlyExits++;
+            }
+            return distance;
+        }
+    }
+
+    private static class Metric extends InstrumentedDistanceMeasure implements MetricDistanceMeasure {
+
+        private Metric(DistanceMeasure delegate) {
+            super(delegate);
+        }
+    }
+
+    private static class EditMetric extends Edit implements MetricDistanceMeasure {
+
+        private EditMetric(DistanceMeasure delegate) {
+            super(delegate);
+        }
+    }
+}
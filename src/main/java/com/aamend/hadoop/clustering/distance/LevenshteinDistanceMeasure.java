@@ -10,11 +10,17 @@ import java.util.Arrays;
  * Date: 10/03/14
  */
 public class LevenshteinDistanceMeasure
-        implements DistanceMeasure {
+        implements SliceDistanceMeasure, EditDistanceMeasure {
 
     private float maxLevDistance;
 
-    private double getNormalizedDistance(int[] s, int[] t,
+    // Scratch rows reused across calls, only grown when a longer sequence
+    // shows up. A measure instance must therefore not be shared by threads.
+    private int[] prevRow = new int[0];
+    private int[] currRow = new int[0];
+
+    private double getNormalizedDistance(int[] s, int sOffset, int n,
+                                         int[] t, int tOffset, int m,
                                          float threshold) {
 
         if (s == null || t == null) {
@@ -26,32 +32,63 @@ public class LevenshteinDistanceMeasure
                     "Threshold must not be negative");
         }
 
+        // if one string is empty, the edit distance is
+        // necessarily the length of the other
+        if (n == 0) {
+            return m <= threshold ? m : 1;
+        } else if (m == 0) {
+            return n <= threshold ? n : 1;
+        }
+
+        int lev = getDistance(s, sOffset, n, t, tOffset, m, threshold);
+        if (lev >= 0) {
+            return (double) lev / (Math.max(n, m));
+        } else {
+            return 1.0;
+        }
+    }
+
+    private int getDistance(int[] s, int sOffset, int n,
+                            int[] t, int tOffset, int m, float threshold) {
 
         // This implementation only computes the distance
         // if it's less than or equal to the threshold value,
         // returning -1 if it's greater.
-        int n = s.length; // length of s
-        int m = t.length; // length of t
+        // n is the length of s, m the length of t
 
         // if one string is empty, the edit distance is
         // necessarily the length of the other
         if (n == 0) {
-            return m <= threshold ? m : 1;
+            return m <= threshold ? m : -1;
         } else if (m == 0) {
-            return n <= threshold ? n : 1;
+            return n <= threshold ? n : -1;
+        }
+
+        // edit distance is at least the length difference
+        if (Math.abs(n - m) > threshold) {
+            return -1;
         }
 
         if (n > m) {
             // swap the two strings to consume less memory
-            final int[] tmp = s.clone();
+            final int[] tmp = s;
             s = t;
             t = tmp;
+            final int tmpOffset = sOffset;
+            sOffset = tOffset;
+            tOffset = tmpOffset;
+            final int tmpLength = n;
             n = m;
-            m = t.length;
+            m = tmpLength;
+        }
+
+        if (prevRow.length < n + 1) {
+            prevRow = new int[n + 1];
+            currRow = new int[n + 1];
         }
 
-        int p[] = new int[n + 1]; // 'previous' cost array, horizontally
-        int d[] = new int[n + 1]; // cost array, horizontally
+        int p[] = prevRow; // 'previous' cost array, horizontally
+        int d[] = currRow; // cost array, horizontally
         int _d[]; // placeholder to assist in swapping p and d
 
         // fill in starting table values
@@ -61,12 +98,12 @@ public class LevenshteinDistanceMeasure
         }
         // these fills ensure that the value above the rightmost entry of our
         // stripe will be ignored in following loop iterations
-        Arrays.fill(p, boundary, p.length, Integer.MAX_VALUE);
-        Arrays.fill(d, Integer.MAX_VALUE);
+        Arrays.fill(p, boundary, n + 1, Integer.MAX_VALUE);
+        Arrays.fill(d, 0, n + 1, Integer.MAX_VALUE);
 
         // iterates through t
         for (int j = 1; j <= m; j++) {
-            final int t_j = t[j - 1]; // jth character of t
+            final int t_j = t[tOffset + j - 1]; // jth character of t
             d[0] = j;
 
             // compute stripe indices, constrain to array size
@@ -78,7 +115,7 @@ public class LevenshteinDistanceMeasure
             // the stripe may lead off of the table
             // if s and t are of different sizes
             if (min > max) {
-                return 1.0;
+                return -1;
             }
 
             // ignore entry left of leftmost
@@ -88,7 +125,7 @@ public class LevenshteinDistanceMeasure
 
             // iterates through [min, max] in s
             for (int i = min; i <= max; i++) {
-                if (s[i - 1] == (t_j)) {
+                if (s[sOffset + i - 1] == (t_j)) {
                     // diagonally left and up
                     d[i] = p[i - 1];
                 } else {
@@ -107,10 +144,9 @@ public class LevenshteinDistanceMeasure
         // if p[n] is greater than the threshold,
         // there's no guarantee on it being the correct distance
         if (p[n] <= threshold) {
-            double lev = (double) p[n] / (Math.max(s.length, t.length));
-            return lev;
+            return p[n];
         } else {
-            return 1.0;
+            return -1;
         }
     }
 
@@ -120,7 +156,35 @@ public class LevenshteinDistanceMeasure
         int maxDistance = Math.max(seq1.length, seq2.length);
         float threshold = maxDistance * maxLevDistance;
         // Compute normalized distance
-        return getNormalizedDistance(seq1, seq2, threshold);
+        return getNormalizedDistance(seq1, 0, seq1.length, seq2, 0, seq2.length, threshold);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int[] seq2, double bound) {
+        return distanceWithin(seq1, 0, seq1.length, seq2, 0, seq2.length, bound);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int offset1, int length1,
+                                 int[] seq2, int offset2, int length2, double bound) {
+        // Compute threshold, the tightest of both max distance and bound
+        int maxDistance = Math.max(length1, length2);
+        float threshold = Math.min(maxDistance * maxLevDistance,
+                Math.nextUp((float) (maxDistance * bound)));
+        // Compute normalized distance
+        return getNormalizedDistance(seq1, offset1, length1, seq2, offset2, length2, threshold);
+    }
+
+    @Override
+    public int editDistance(int[] seq1, int[] seq2, int maxDistance) {
+        return editDistance(seq1, 0, seq1.length, seq2, 0, seq2.length, maxDistance);
+    }
+
+    @Override
+    public int editDistance(int[] seq1, int offset1, int length1,
+                            int[] seq2, int offset2, int length2, int maxDistance) {
+        int lev = getDistance(seq1, offset1, length1, seq2, offset2, length2, maxDistance);
+        return lev >= 0 ? lev : Integer.MAX_VALUE;
     }
 
     public void configure(Configuration conf) {
@@ -0,0 +1,11 @@
+package com.aamend.hadoop.clustering.distance;
+
+/**
+ * Marker for DistanceMeasure satisfying the triangle inequality, so that
+ * metric indexes can prune candidates without computing their distance.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface MetricDistanceMeasure extends DistanceMeasure {
+
+}
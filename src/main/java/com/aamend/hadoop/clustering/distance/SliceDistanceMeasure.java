@@ -0,0 +1,25 @@
+package com.aamend.hadoop.clustering.distance;
+
+/**
+ * BoundedDistanceMeasure able to compare points stored as slices of larger
+ * arrays, such as canopy centers packed in a CanopyList, without copying
+ * them first.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface SliceDistanceMeasure extends BoundedDistanceMeasure {
+
+    /**
+     * @param seq1    the array holding the first point
+     * @param offset1 the position of the first point in seq1
+     * @param length1 the length of the first point
+     * @param seq2    the array holding the second point
+     * @param offset2 the position of the second point in seq2
+     * @param length2 the length of the second point
+     * @param bound   the maximum distance the caller is interested in
+     * @return the same value as distanceWithin on copies of both slices
+     */
+    double distanceWithin(int[] seq1, int offset1, int length1,
+                          int[] seq2, int offset2, int length2, double bound);
+
+}
@@ -0,0 +1,171 @@
+package com.aamend.hadoop.clustering.distance;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Arrays;
+
+/**
+ * Tanimoto distance (a.k.a Jaccard distance) between two sets of integers.
+ * Points are expected to be sorted and deduplicated (see canonicalize), so
+ * that the intersection is computed by merging both arrays without any
+ * allocation nor boxing. Galloping search is used instead of a linear merge
+ * when one set is much smaller than the other.
+ * <p/>
+ * Unlike TanimotoDistanceMeasure, duplicated integers are only accounted
+ * once, which is the actual Jaccard distance between the sets.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class SortedSetTanimotoDistanceMeasure
+        implements CanonicalDistanceMeasure, SliceDistanceMeasure,
+        MetricDistanceMeasure {
+
+    // Gallop when a set is at least that many times larger than the other
+    private static final int GALLOP_RATIO = 8;
+
+    // Slack preventing rounding errors from discarding a pair on the bound
+    private static final double EPSILON = 1e-9;
+
+    @Override
+    public double distance(int[] seq1, int[] seq2) {
+        return getDistance(seq1, 0, seq1.length, seq2, 0, seq2.length, 0.0d);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int[] seq2, double bound) {
+        return distanceWithin(seq1, 0, seq1.length, seq2, 0, seq2.length, bound);
+    }
+
+    @Override
+    public double distanceWithin(int[] seq1, int offset1, int length1,
+                                 int[] seq2, int offset2, int length2, double bound) {
+
+        if (bound >= 1.0d) {
+            // Any pair of sets is within bound
+            return getDistance(seq1, offset1, length1, seq2, offset2, length2, 0.0d);
+        }
+
+        // Distance is below bound if and only if intersection is at least
+        // (1 - bound) * (|A| + |B|) / (2 - bound)
+        double minIntersection = (1.0d - bound) * (length1 + length2)
+                / (2.0d - bound) - EPSILON;
+
+        // Size ratio filter, intersection is at most the smallest set
+        if (Math.min(length1, length2) < minIntersection) {
+            return 1.0d;
+        }
+
+        return getDistance(seq1, offset1, length1, seq2, offset2, length2, minIntersection);
+    }
+
+    private double getDistance(int[] seq1, int offset1, int length1,
+                               int[] seq2, int offset2, int length2, double minIntersection) {
+
+        int union = length1 + length2;
+        if (union == 0) {
+            return 0.0d;
+        }
+
+        int intersection;
+        if (length1 * GALLOP_RATIO < length2) {
+            intersection = gallopIntersection(seq1, offset1, length1, seq2, offset2, length2, minIntersection);
+        } else if (length2 * GALLOP_RATIO < length1) {
+            intersection = gallopIntersection(seq2, offset2, length2, seq1, offset1, length1, minIntersection);
+        } else {
+            intersection = mergeIntersection(seq1, offset1, length1, seq2, offset2, length2, minIntersection);
+        }
+
+        if (intersection < 0) {
+            // Could not reach the minimum intersection
+            return 1.0d;
+        }
+
+        return 1 - (double) intersection / (union - intersection);
+    }
+
+    private static int mergeIntersection(int[] a, int aOffset, int aLength,
+                                         int[] b, int bOffset, int bLength, double minIntersection) {
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < aLength && j < bLength) {
+            if (intersection + Math.min(aLength - i, bLength - j) < minIntersection) {
+                return -1;
+            }
+            final int x = a[aOffset + i];
+            final int y = b[bOffset + j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                intersection++;
+                i++;
+                j++;
+            }
+        }
+        return intersection;
+    }
+
+    private static int gallopIntersection(int[] small, int sOffset, int sLength,
+                                          int[] large, int lOffset, int lLength, double minIntersection) {
+        int from = 0;
+        int intersection = 0;
+        for (int i = 0; i < sLength && from < lLength; i++) {
+            if (intersection + sLength - i < minIntersection) {
+                return -1;
+            }
+            final int value = small[sOffset + i];
+
+            // Find a range [from, to] that must contain value if present
+            int step = 1;
+            int to = from;
+            while (to < lLength && large[lOffset + to] < value) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            to = Math.min(to, lLength - 1);
+
+            int idx = Arrays.binarySearch(large, lOffset + from, lOffset + to + 1, value);
+            if (idx >= 0) {
+                intersection++;
+                from = idx - lOffset + 1;
+            } else {
+                from = -idx - 1 - lOffset;
+            }
+        }
+        return intersection;
+    }
+
+    @Override
+    public int[] canonicalize(int[] point) {
+
+        // Already sorted and deduplicated, nothing to copy
+        boolean canonical = true;
+        for (int i = 1; i < point.length; i++) {
+            if (point[i - 1] >= point[i]) {
+                canonical = false;
+                break;
+            }
+        }
+        if (canonical) {
+            return point;
+        }
+
+        int[] sorted = point.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    @Override
+    public void configure(Configuration conf) {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,168 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenterList;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.distance.EditDistanceMeasure;
+
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree over clusters' centers, indexed by their raw edit
+ * distance (which is a metric, unlike the normalized one). A center within
+ * a normalized distance d of a point of length n is within d * max(n, l)
+ * edits of it, l being the longest center, which bounds the subtrees to
+ * explore. Returned distances are the ones of the supplied measure.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class BKTreeClusterIndex implements ClusterIndex {
+
+    // Slack preventing rounding errors from pruning a center on the bound
+    private static final double EPSILON = 1e-9;
+
+    private final ClusterCenters centers;
+    private final CenterBuffer buffers;
+    private final int maxLength;
+
+    // Tree nodes, one per cluster, children as linked lists
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] label;
+    private final int[] maxLabel;
+
+    public BKTreeClusterIndex(List<Cluster> clusters, DistanceMeasure measure) {
+        this(new ClusterCenterList(clusters), measure);
+    }
+
+    public BKTreeClusterIndex(ClusterCenters centers, DistanceMeasure measure) {
+
+        EditDistanceMeasure editMeasure = editDistanceMeasure(measure);
+        int n = centers.size();
+        this.centers = centers;
+        this.buffers = new CenterBuffer(centers);
+        this.maxLength = buffers.getMaxLength();
+        this.firstChild = new int[n];
+        this.nextSibling = new int[n];
+        this.label = new int[n];
+        this.maxLabel = new int[n];
+
+        int[] buffer = new int[maxLength];
+        int[] nodeBuffer = new int[maxLength];
+        for (int i = 0; i < n; i++) {
+            firstChild[i] = -1;
+            nextSibling[i] = -1;
+            if (i > 0) {
+                insert(i, editMeasure, buffer, nodeBuffer);
+            }
+        }
+    }
+
+    private void insert(int position, EditDistanceMeasure measure, int[] buffer, int[] nodeBuffer) {
+
+        int[] center = centers.getCenter(position, buffer);
+        int length = centers.getCenterLength(position);
+        int node = 0;
+        while (true) {
+            int edits = measure.editDistance(centers.getCenter(node, nodeBuffer), 0, centers.getCenterLength(node),
+                    center, 0, length, Integer.MAX_VALUE);
+            int child = firstChild[node];
+            while (child >= 0 && label[child] != edits) {
+                child = nextSibling[child];
+            }
+            if (child < 0) {
+                label[position] = edits;
+                nextSibling[position] = firstChild[node];
+                firstChild[node] = position;
+                maxLabel[node] = Math.max(maxLabel[node], edits);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    @Override
+    public int nearest(int[] point, DistanceMeasure measure, double maxDistance) {
+
+        if (centers.size() == 0) {
+            return -1;
+        }
+
+        EditDistanceMeasure editMeasure = editDistanceMeasure(measure);
+        int[] buffer = buffers.get();
+        NearestSearch search = new NearestSearch(maxDistance);
+        int length = Math.max(point.length, maxLength);
+
+        // Pending nodes along with the number of edits to their parent
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = 0;
+
+        while (size > 0) {
+
+            int parentEdits = stack[--size];
+            int node = stack[--size];
+
+            // Number of edits a center must be within to be a candidate
+            double radius = radius(search.limit(), length);
+            if (node > 0 && Math.abs(parentEdits - label[node]) > radius) {
+                continue;
+            }
+
+            int[] center = centers.getCenter(node, buffer);
+            int centerLength = centers.getCenterLength(node);
+            int cap = radius >= Integer.MAX_VALUE - maxLabel[node] ?
+                    Integer.MAX_VALUE : (int) radius + maxLabel[node];
+            int edits = editMeasure.editDistance(center, 0, centerLength, point, 0, point.length, cap);
+
+            if (edits <= radius(search.limit(), Math.max(point.length, centerLength))) {
+                double dist = DistanceMeasures.distanceWithin(measure, center, 0, centerLength,
+                        point, 0, point.length, search.limit());
+                search.offer(node, dist);
+            }
+
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                if (Math.abs(edits - label[child]) <= radius(search.limit(), length)) {
+                    if (size + 2 > stack.length) {
+                        int[] grown = new int[stack.length * 2];
+                        System.arraycopy(stack, 0, grown, 0, size);
+                        stack = grown;
+                    }
+                    stack[size++] = child;
+                    stack[size++] = edits;
+                }
+            }
+        }
+
+        return search.position;
+    }
+
+    private static double radius(double limit, int length) {
+        if (limit >= 1.0d) {
+            // Cut off distances, no guarantee on the number of edits
+            return Integer.MAX_VALUE;
+        }
+        return limit * length + EPSILON;
+    }
+
+    private static EditDistanceMeasure editDistanceMeasure(DistanceMeasure measure) {
+        if (!(measure instanceof EditDistanceMeasure)) {
+            throw new IllegalArgumentException("BK-tree index requires an EditDistanceMeasure, " +
+                    measure.getClass().getName() + " is not");
+        }
+        return (EditDistanceMeasure) measure;
+    }
+
+    @Override
+    public ClusterCenters getCenters() {
+        return centers;
+    }
+
+    @Override
+    public int size() {
+        return centers.size();
+    }
+}
@@ -0,0 +1,141 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.distance.SortedSetTanimotoDistanceMeasure;
+
+import java.util.Arrays;
+
+/**
+ * Canopies created so far by a mapper, along with the candidates a new point
+ * must be compared with. All canopies are candidates, unless measure is a
+ * SortedSetTanimotoDistanceMeasure, in which case only canopies sharing
+ * enough tokens with the point to be within T1 are (see CanopyTokenIndex).
+ * Candidates are always returned in the order canopies were added.
+ * <p/>
+ * Canopies are packed in an arena rather than kept as Cluster objects: all
+ * centers are appended to a single array (canopy i spanning offsets[i] to
+ * offsets[i + 1]), ids and observations to parallel arrays, so that scanning
+ * canopies reads contiguous memory. Canopies are referred to by their
+ * position, and compared with points as slices of the arena (see
+ * SliceDistanceMeasure).
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyList {
+
+    private final DistanceMeasure measure;
+    private final CanopyTokenIndex index;
+
+    private int[] elements = new int[1024];
+    private int[] offsets = new int[65];
+    private int[] ids = new int[64];
+    private long[] nums = new long[64];
+    private int size;
+
+    public CanopyList(DistanceMeasure measure, float t1, float t2) {
+        this.measure = measure;
+        // Points within either T1 or T2 of a canopy must be candidates
+        float maxDistance = Math.max(t1, t2);
+        if (DistanceMeasures.unwrap(measure) instanceof SortedSetTanimotoDistanceMeasure && maxDistance < 1.0f) {
+            index = new CanopyTokenIndex(maxDistance);
+        } else {
+            index = null;
+        }
+    }
+
+    /**
+     * @param id     the canopy id
+     * @param center the canopy center, canonicalized, copied into the arena
+     * @param num    the canopy observations
+     * @return the position of the canopy
+     */
+    public int add(int id, int[] center, long num) {
+
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            nums = Arrays.copyOf(nums, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        int offset = offsets[size];
+        if (offset + center.length > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(elements.length * 2, offset + center.length));
+        }
+        System.arraycopy(center, 0, elements, offset, center.length);
+        offsets[size + 1] = offset + center.length;
+        ids[size] = id;
+        nums[size] = num;
+
+        if (index != null) {
+            index.add(center);
+        }
+        return size++;
+    }
+
+    /**
+     * Retrieve the canopies a point must be compared with.
+     *
+     * @param point the point, canonicalized
+     * @return the number of candidates, see getCandidate
+     */
+    public int candidates(int[] point) {
+        return index == null ? size : index.candidates(point);
+    }
+
+    /**
+     * @param i the candidate number, lower than the value returned by the
+     *          last call to candidates
+     * @return the position of the candidate canopy
+     */
+    public int getCandidate(int i) {
+        return index == null ? i : index.getCandidates()[i];
+    }
+
+    /**
+     * @param position the canopy position
+     * @param point    the point, canonicalized
+     * @param bound    the maximum distance the caller is interested in
+     * @return the distance between the canopy center and the point, see
+     * DistanceMeasures.distanceWithin
+     */
+    public double distanceWithin(int position, int[] point, double bound) {
+        int offset = offsets[position];
+        return DistanceMeasures.distanceWithin(measure, elements, offset, offsets[position + 1] - offset,
+                point, 0, point.length, bound);
+    }
+
+    public int getId(int position) {
+        return ids[position];
+    }
+
+    public long getNum(int position) {
+        return nums[position];
+    }
+
+    public void observe(int position, long num) {
+        nums[position] += num;
+    }
+
+    /**
+     * @return a copy of the canopy center
+     */
+    public int[] getCenter(int position) {
+        return Arrays.copyOfRange(elements, offsets[position], offsets[position + 1]);
+    }
+
+    /**
+     * Set a key to the canopy center without copying it. The key must be
+     * written before any canopy is added.
+     *
+     * @param position the canopy position
+     * @param key      the key to set
+     */
+    public void getCenter(int position, CenterWritable key) {
+        key.set(elements, offsets[position], offsets[position + 1] - offsets[position]);
+    }
+
+    public int size() {
+        return size;
+    }
+}
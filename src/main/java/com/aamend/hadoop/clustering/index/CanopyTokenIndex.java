@@ -0,0 +1,207 @@
+package com.aamend.hadoop.clustering.index;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index (token -> canopies) over canopies' centers, used to find
+ * the only canopies whose Jaccard distance to a point may be below T1.
+ * Centers must be sorted sets (see SortedSetTanimotoDistanceMeasure).
+ * <p/>
+ * Relies on prefix filtering: two sets of similarity at least s must share
+ * at least one token among their first |x| - ceil(s * |x|) + 1 tokens. Only
+ * these prefixes are indexed and probed, and candidates are further filtered
+ * on their size (s * |x| &lt;= |y| &lt;= |x| / s).
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyTokenIndex {
+
+    // Slack preventing rounding errors from discarding a canopy on T1
+    private static final double EPSILON = 1e-9;
+
+    private final double similarity;
+
+    // Token -> head of postings list (open addressing)
+    private int[] tokens = new int[64];
+    private int[] heads = new int[64];
+    private boolean[] used = new boolean[64];
+    private int distinct;
+
+    // Postings as linked lists
+    private int[] postingCanopy = new int[64];
+    private int[] postingNext = new int[64];
+    private int postings;
+
+    // Canopies' sizes, empty canopies are not reachable through tokens
+    private int[] sizes = new int[64];
+    private int[] empties = new int[0];
+    private int canopies;
+
+    // Candidates of the last query
+    private int[] stamps = new int[64];
+    private int stamp;
+    private int[] candidates = new int[64];
+
+    /**
+     * @param maxDistance the distance canopies must be strictly within
+     */
+    public CanopyTokenIndex(double maxDistance) {
+        if (maxDistance >= 1.0d) {
+            throw new IllegalArgumentException("Inverted index requires T1 to be lower than 1");
+        }
+        this.similarity = 1.0d - maxDistance - EPSILON;
+    }
+
+    /**
+     * Index a new canopy, canopies are numbered in the order they are added.
+     *
+     * @param center the canopy center, as a sorted set
+     * @return the canopy number
+     */
+    public int add(int[] center) {
+
+        int canopy = canopies++;
+        if (canopy == sizes.length) {
+            sizes = Arrays.copyOf(sizes, canopy * 2);
+            stamps = Arrays.copyOf(stamps, canopy * 2);
+        }
+        sizes[canopy] = center.length;
+
+        if (center.length == 0) {
+            empties = Arrays.copyOf(empties, empties.length + 1);
+            empties[empties.length - 1] = canopy;
+            return canopy;
+        }
+
+        int prefix = prefixLength(center.length);
+        for (int i = 0; i < prefix; i++) {
+            if (postings == postingCanopy.length) {
+                postingCanopy = Arrays.copyOf(postingCanopy, postings * 2);
+                postingNext = Arrays.copyOf(postingNext, postings * 2);
+            }
+            int slot = slot(center[i], true);
+            postingCanopy[postings] = canopy;
+            postingNext[postings] = heads[slot];
+            heads[slot] = postings++;
+        }
+        return canopy;
+    }
+
+    /**
+     * Retrieve the canopies that may be within distance of a point. Returned
+     * array is reused by the next call.
+     *
+     * @param point the point, as a sorted set
+     * @return the number of candidates, see getCandidates
+     */
+    public int candidates(int[] point) {
+
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+
+        if (point.length == 0) {
+            System.arraycopy(empties, 0, ensureCandidates(empties.length), 0, empties.length);
+            return empties.length;
+        }
+
+        double minSize = similarity * point.length;
+        double maxSize = point.length / similarity;
+        int prefix = prefixLength(point.length);
+        int found = 0;
+        for (int i = 0; i < prefix; i++) {
+            int slot = slot(point[i], false);
+            if (slot < 0) {
+                continue;
+            }
+            for (int p = heads[slot]; p >= 0; p = postingNext[p]) {
+                int canopy = postingCanopy[p];
+                if (stamps[canopy] != stamp) {
+                    stamps[canopy] = stamp;
+                    if (sizes[canopy] >= minSize && sizes[canopy] <= maxSize) {
+                        ensureCandidates(found + 1)[found++] = canopy;
+                    }
+                }
+            }
+        }
+
+        // Keep canopies in the order they were created
+        Arrays.sort(candidates, 0, found);
+        return found;
+    }
+
+    /**
+     * @return the candidates of the last query
+     */
+    public int[] getCandidates() {
+        return candidates;
+    }
+
+    public int size() {
+        return canopies;
+    }
+
+    private int prefixLength(int size) {
+        int prefix = size - (int) Math.ceil(similarity * size) + 1;
+        return Math.max(1, Math.min(size, prefix));
+    }
+
+    private int[] ensureCandidates(int size) {
+        if (candidates.length < size) {
+            candidates = Arrays.copyOf(candidates, Math.max(size, candidates.length * 2));
+        }
+        return candidates;
+    }
+
+    private int slot(int token, boolean create) {
+
+        if (create && (distinct + 1) * 2 > tokens.length) {
+            rehash();
+        }
+
+        int mask = tokens.length - 1;
+        int slot = hash(token) & mask;
+        while (used[slot]) {
+            if (tokens[slot] == token) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (!create) {
+            return -1;
+        }
+        used[slot] = true;
+        tokens[slot] = token;
+        heads[slot] = -1;
+        distinct++;
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldTokens = tokens;
+        int[] oldHeads = heads;
+        boolean[] oldUsed = used;
+        tokens = new int[oldTokens.length * 2];
+        heads = new int[oldTokens.length * 2];
+        used = new boolean[oldTokens.length * 2];
+        int mask = tokens.length - 1;
+        for (int i = 0; i < oldTokens.length; i++) {
+            if (oldUsed[i]) {
+                int slot = hash(oldTokens[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                tokens[slot] = oldTokens[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private static int hash(int token) {
+        int h = token * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
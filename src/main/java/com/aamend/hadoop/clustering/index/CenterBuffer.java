@@ -0,0 +1,31 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+
+/**
+ * Buffer of each querying thread, large enough for any center of an index
+ * (see ClusterCenters.getCenter).
+ * <p/>
+ * Date: 17/10/26
+ */
+class CenterBuffer extends ThreadLocal<int[]> {
+
+    private final int maxLength;
+
+    CenterBuffer(ClusterCenters centers) {
+        int longest = 0;
+        for (int i = 0; i < centers.size(); i++) {
+            longest = Math.max(longest, centers.getCenterLength(i));
+        }
+        this.maxLength = longest;
+    }
+
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    protected int[] initialValue() {
+        return new int[maxLength];
+    }
+}
@@ -0,0 +1,37 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+
+/**
+ * In-memory index over clusters' centers answering best-match queries.
+ * An index is immutable once built and can be queried concurrently, as long
+ * as each thread supplies its own DistanceMeasure instance.
+ * <p/>
+ * Date: 17/10/26
+ */
+public interface ClusterIndex {
+
+    /**
+     * Retrieve the cluster whose center is the closest to a point. When
+     * several clusters are at the same distance, the first one the index has
+     * been built with is returned. Only its position is returned, so that
+     * callers needing its id alone do not materialize a Cluster (see
+     * ClusterCenters.getCluster).
+     *
+     * @param point       the point to cluster
+     * @param measure     the DistanceMeasure to use
+     * @param maxDistance the maximum distance from point to cluster's center
+     * @return the position of the closest cluster in getCenters(), -1 if
+     * none is within maxDistance
+     */
+    int nearest(int[] point, DistanceMeasure measure, double maxDistance);
+
+    /**
+     * @return the clusters the index has been built with
+     */
+    ClusterCenters getCenters();
+
+    int size();
+
+}
@@ -0,0 +1,65 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenterList;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.EditDistanceMeasure;
+import com.aamend.hadoop.clustering.distance.MetricDistanceMeasure;
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.List;
+
+/**
+ * Build the ClusterIndex specified from Hadoop configuration (see
+ * Canopy.CLUSTER_INDEX). By default, a BK-tree is used for edit distance
+ * measures, a VP-tree for metric measures and a linear scan otherwise.
+ * <p/>
+ * Date: 17/10/26
+ */
+public final class ClusterIndexes {
+
+    public static final String AUTO = "auto";
+    public static final String LINEAR = "linear";
+    public static final String VP_TREE = "vptree";
+    public static final String BK_TREE = "bktree";
+
+    private ClusterIndexes() {
+    }
+
+    public static ClusterIndex configureIndex(Configuration conf, List<Cluster> clusters,
+                                              DistanceMeasure measure) {
+        return configureIndex(conf, new ClusterCenterList(clusters), measure);
+    }
+
+    public static ClusterIndex configureIndex(Configuration conf, ClusterCenters clusters,
+                                              DistanceMeasure measure) {
+
+        String type = conf.get(Canopy.CLUSTER_INDEX, AUTO);
+        if (AUTO.equals(type)) {
+            if (measure instanceof EditDistanceMeasure) {
+                type = BK_TREE;
+            } else if (measure instanceof MetricDistanceMeasure) {
+                type = VP_TREE;
+            } else {
+                type = LINEAR;
+            }
+        }
+
+        if (LINEAR.equals(type)) {
+            return new LinearClusterIndex(clusters);
+        } else if (BK_TREE.equals(type)) {
+            return new BKTreeClusterIndex(clusters, measure);
+        } else if (VP_TREE.equals(type)) {
+            if (!(measure instanceof MetricDistanceMeasure)) {
+                throw new IllegalArgumentException("VP-tree index requires a MetricDistanceMeasure, " +
+                        measure.getClass().getName() + " is not");
+            }
+            return new VPTreeClusterIndex(clusters, measure);
+        } else {
+            throw new IllegalArgumentException("Unknown cluster index " + type);
+        }
+    }
+
+}
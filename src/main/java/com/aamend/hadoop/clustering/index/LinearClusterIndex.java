@@ -0,0 +1,59 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenterList;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+
+import java.util.List;
+
+/**
+ * Exhaustive scan over all clusters, works with any DistanceMeasure.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class LinearClusterIndex implements ClusterIndex {
+
+    private final ClusterCenters centers;
+    private final CenterBuffer buffers;
+
+    public LinearClusterIndex(List<Cluster> clusters) {
+        this(new ClusterCenterList(clusters));
+    }
+
+    public LinearClusterIndex(ClusterCenters centers) {
+        this.centers = centers;
+        this.buffers = new CenterBuffer(centers);
+    }
+
+    @Override
+    public int nearest(int[] point, DistanceMeasure measure, double maxDistance) {
+
+        // Distance to a center only needs to be known if smaller than
+        // the best one so far
+        int[] buffer = buffers.get();
+        double minDistance = Double.MAX_VALUE;
+        int nearest = -1;
+        for (int i = 0; i < centers.size(); i++) {
+            int[] center = centers.getCenter(i, buffer);
+            double dist = DistanceMeasures.distanceWithin(measure, center, 0, centers.getCenterLength(i),
+                    point, 0, point.length, Math.min(minDistance, maxDistance));
+            if (dist < minDistance && dist <= maxDistance) {
+                minDistance = dist;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public ClusterCenters getCenters() {
+        return centers;
+    }
+
+    @Override
+    public int size() {
+        return centers.size();
+    }
+}
@@ -0,0 +1,35 @@
+package com.aamend.hadoop.clustering.index;
+
+/**
+ * Best match of a nearest cluster query, ties resolved on insertion order
+ * so that indexes return the same cluster as an exhaustive scan.
+ * <p/>
+ * Date: 17/10/26
+ */
+class NearestSearch {
+
+    final double maxDistance;
+    double minDistance = Double.MAX_VALUE;
+    int position = -1;
+
+    NearestSearch(double maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * @return the distance a center must be within to improve the match
+     */
+    double limit() {
+        return Math.min(minDistance, maxDistance);
+    }
+
+    void offer(int candidate, double dist) {
+        if (dist > maxDistance) {
+            return;
+        }
+        if (dist < minDistance || (dist == minDistance && candidate < position)) {
+            minDistance = dist;
+            position = candidate;
+        }
+    }
+}
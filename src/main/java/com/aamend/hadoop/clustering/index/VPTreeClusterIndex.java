@@ -0,0 +1,189 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenterList;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+
+import java.util.List;
+
+/**
+ * Vantage-point tree over clusters' centers. Each node splits the remaining
+ * centers in 2 halves according to their distance to a vantage center, so
+ * that whole subtrees can be discarded using the triangle inequality.
+ * Results are only exact with a DistanceMeasure that is a metric.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class VPTreeClusterIndex implements ClusterIndex {
+
+    // Slack preventing rounding errors from pruning a center on the bound
+    private static final double EPSILON = 1e-9;
+
+    private final ClusterCenters centers;
+    private final CenterBuffer buffers;
+
+    // Tree nodes, one per cluster
+    private final int[] vantage;
+    private final int[] inside;
+    private final int[] outside;
+    private final double[] insideMin;
+    private final double[] insideMax;
+    private final double[] outsideMin;
+    private final double[] outsideMax;
+    private final int root;
+    private int nodes;
+
+    public VPTreeClusterIndex(List<Cluster> clusters, DistanceMeasure measure) {
+        this(new ClusterCenterList(clusters), measure);
+    }
+
+    public VPTreeClusterIndex(ClusterCenters centers, DistanceMeasure measure) {
+
+        int n = centers.size();
+        this.centers = centers;
+        this.buffers = new CenterBuffer(centers);
+        this.vantage = new int[n];
+        this.inside = new int[n];
+        this.outside = new int[n];
+        this.insideMin = new double[n];
+        this.insideMax = new double[n];
+        this.outsideMin = new double[n];
+        this.outsideMax = new double[n];
+
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        int[] buffer = new int[buffers.getMaxLength()];
+        int[] vantageBuffer = new int[buffers.getMaxLength()];
+        this.root = build(positions, new double[n], 0, n, measure, buffer, vantageBuffer);
+    }
+
+    private int build(int[] positions, double[] dists, int from, int to,
+                      DistanceMeasure measure, int[] buffer, int[] vantageBuffer) {
+
+        if (from >= to) {
+            return -1;
+        }
+
+        int node = nodes++;
+        int vp = positions[from];
+        vantage[node] = vp;
+
+        // Sort remaining centers by distance to the vantage center
+        int[] center = centers.getCenter(vp, vantageBuffer);
+        int length = centers.getCenterLength(vp);
+        for (int i = from + 1; i < to; i++) {
+            dists[i] = distance(measure, center, length, positions[i], buffer);
+        }
+        sort(positions, dists, from + 1, to - 1);
+
+        // Closest half goes inside, farthest half goes outside
+        int mid = from + 1 + (to - from - 1) / 2;
+        if (mid > from + 1) {
+            insideMin[node] = dists[from + 1];
+            insideMax[node] = dists[mid - 1];
+        }
+        if (to > mid) {
+            outsideMin[node] = dists[mid];
+            outsideMax[node] = dists[to - 1];
+        }
+        inside[node] = build(positions, dists, from + 1, mid, measure, buffer, vantageBuffer);
+        outside[node] = build(positions, dists, mid, to, measure, buffer, vantageBuffer);
+        return node;
+    }
+
+    /**
+     * @return the exact distance from a point to center i
+     */
+    private double distance(DistanceMeasure measure, int[] point, int length, int i, int[] buffer) {
+        return DistanceMeasures.distanceWithin(measure, centers.getCenter(i, buffer), 0, centers.getCenterLength(i),
+                point, 0, length, Double.MAX_VALUE);
+    }
+
+    private static void sort(int[] positions, double[] dists, int lo, int hi) {
+        while (lo < hi) {
+            double pivot = dists[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (dists[i] < pivot) {
+                    i++;
+                }
+                while (dists[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double d = dists[i];
+                    dists[i] = dists[j];
+                    dists[j] = d;
+                    int p = positions[i];
+                    positions[i] = positions[j];
+                    positions[j] = p;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse on the smallest side only
+            if (j - lo < hi - i) {
+                sort(positions, dists, lo, j);
+                lo = i;
+            } else {
+                sort(positions, dists, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    @Override
+    public int nearest(int[] point, DistanceMeasure measure, double maxDistance) {
+        NearestSearch search = new NearestSearch(maxDistance);
+        search(root, point, measure, search, buffers.get());
+        return search.position;
+    }
+
+    private void search(int node, int[] point, DistanceMeasure measure,
+                        NearestSearch search, int[] buffer) {
+
+        if (node < 0) {
+            return;
+        }
+
+        int vp = vantage[node];
+        double dist = distance(measure, point, point.length, vp, buffer);
+        search.offer(vp, dist);
+
+        // Lower bounds of the distance from point to any center of subtrees
+        double insideBound = Math.max(insideMin[node] - dist, dist - insideMax[node]);
+        double outsideBound = Math.max(outsideMin[node] - dist, dist - outsideMax[node]);
+
+        // Explore the most promising subtree first
+        if (insideBound <= outsideBound) {
+            if (insideBound <= search.limit() + EPSILON) {
+                search(inside[node], point, measure, search, buffer);
+            }
+            if (outsideBound <= search.limit() + EPSILON) {
+                search(outside[node], point, measure, search, buffer);
+            }
+        } else {
+            if (outsideBound <= search.limit() + EPSILON) {
+                search(outside[node], point, measure, search, buffer);
+            }
+            if (insideBound <= search.limit() + EPSILON) {
+                search(inside[node], point, measure, search, buffer);
+            }
+        }
+    }
+
+    @Override
+    public ClusterCenters getCenters() {
+        return centers;
+    }
+
+    @Override
+    public int size() {
+        return centers.size();
+    }
+}
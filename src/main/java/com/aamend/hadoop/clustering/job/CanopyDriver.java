@@ -2,26 +2,48 @@ package com.aamend.hadoop.clustering.job;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterStore;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
 import com.aamend.hadoop.clustering.mapreduce.*;
+import com.google.gson.GsonBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.ObjectWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -32,6 +54,9 @@ public class CanopyDriver {
 
     private static final Logger LOGGER =
             LoggerFactory.getLogger(CanopyDriver.class);
+    public static final String MAPREDUCE_ENGINE = "mapreduce";
+    public static final String LOCAL_ENGINE = "local";
+    public static final String METRICS_FILE_NAME = "_metrics.json";
 
     /**
      * Build a directory of Canopies from the input arguments.
@@ -40,6 +65,22 @@ public class CanopyDriver {
      * reducers is 2 times smaller (until reached 1) while {T1,T2} parameters
      * gets slightly larger (starts with half of the required size).
      * Note the extensive use of /tmp directory at each iteration.
+     * When MINHASH_BANDS is set, points are first sorted by LSH bucket so that
+     * similar points are likely to be clustered by the same first mapper.
+     * When COMBINER_SAMPLE is set, at most that many points per canopy and per
+     * map task are shuffled (observations are still all accounted for).
+     * When ADAPTIVE is set, the number of reducers and {T1,T2} of each
+     * iteration are derived from the number of canopies created by the
+     * previous ones (see nextReducers and nextThreshold). That count is the
+     * only input of the schedule: canopies are only rejected by the last
+     * iteration, and distances between points are not sampled.
+     * When SINGLE_PASS is set, a single job is used whatever the number of
+     * reducers (see createSinglePass).
+     * When DEDUP is set, identical points are first collapsed into a single
+     * point weighing their number (see dedupPoints).
+     * When ENGINE is "local", jobs are run within the current JVM.
+     * When INSTRUMENT is set, a summary of each job is written to
+     * METRICS_FILE_NAME in output.
      * Clustering algorithm is defined according to the supplied DistanceMeasure
      * (can be a custom measure implementing DistanceMeasure assuming it is available
      * on Hadoop classpath). At final step, canopies with less than CF observations will be rejected.
@@ -89,6 +130,12 @@ public class CanopyDriver {
             throw new IllegalArgumentException("Number of reducers must be greater or equals to 1");
         }
 
+        // Weights would be lost when sorting points by LSH bucket
+        boolean dedup = conf.getBoolean(Canopy.DEDUP, false);
+        if (dedup && conf.getInt(Canopy.MINHASH_BANDS, 0) > 0) {
+            throw new IllegalArgumentException("Points deduplication cannot be combined with MinHash buckets");
+        }
+
         double num = Math.floor(Math.log(reducers) / Math.log(2)) + 1;
         int itTotal = (int) num;
         int it = 0;
@@ -102,6 +149,16 @@ public class CanopyDriver {
         float itT1 = minT1;
         float itT2 = minT2;
 
+        // Adaptive schedule driven by the canopies of each iteration
+        boolean adaptive = conf.getBoolean(Canopy.ADAPTIVE, false);
+        float convergence = conf.getFloat(Canopy.ADAPTIVE_CONVERGENCE, 0.9f);
+        long reducerCanopies = conf.getLong(Canopy.ADAPTIVE_REDUCER_CANOPIES, 100000L);
+        int maxIterations = 2 * itTotal;
+        long previous = 0L;
+
+        // Summary of each job when instrumented
+        List<Map<String, Object>> metrics = new ArrayList<Map<String, Object>>();
+
         // Prepare input, output and temporary path
         Path tmp = new Path("/tmp/CLUSTERING-" + UUID.randomUUID().toString().toUpperCase());
         Path itOPath = new Path(tmp, Cluster.CLUSTERS_TMP_DIR + it);
@@ -117,6 +174,24 @@ public class CanopyDriver {
             fileSystem.mkdirs(tmp);
         }
 
+        // Optionally collapse identical points first
+        if (dedup) {
+            itIPath = new Path(tmp, Cluster.CLUSTERS_TMP_DIR + "dedup");
+            dedupPoints(conf, input, itIPath, reducers, false, metrics);
+        }
+
+        // Optionally sort points by LSH bucket first
+        if (conf.getInt(Canopy.MINHASH_BANDS, 0) > 0) {
+            itIPath = new Path(tmp, Cluster.CLUSTERS_TMP_DIR + "lsh");
+            bucketPoints(conf, input, itIPath, reducers, metrics);
+        }
+
+        // Mappers refine their own canopies, a single reducer merges them
+        if (conf.getBoolean(Canopy.SINGLE_PASS, false)) {
+            canopies = createSinglePass(conf, itIPath, output, measure, t1, t2, cf, metrics);
+            reducers = 0;
+        }
+
         // Start job iteration
         while (reducers >= 1) {
 
@@ -157,10 +232,15 @@ public class CanopyDriver {
                 createJob.setMapperClass(CanopyCreateMapper.class);
             }
 
+            // Optionally merge points per canopy before the shuffle
+            if (conf.getInt(Canopy.COMBINER_SAMPLE, 0) > 0) {
+                createJob.setCombinerClass(CanopyCreateCombiner.class);
+            }
+
             createJob.setReducerClass(CanopyCreateReducer.class);
             createJob.setJarByClass(CanopyDriver.class);
             createJob.setNumReduceTasks(reducers);
-            createJob.setMapOutputKeyClass(Text.class);
+            createJob.setMapOutputKeyClass(CenterWritable.class);
             createJob.setMapOutputValueClass(CanopyWritable.class);
             createJob.setOutputKeyClass(Text.class);
             createJob.setOutputValueClass(CanopyWritable.class);
@@ -169,15 +249,14 @@ public class CanopyDriver {
             SequenceFileInputFormat.addInputPath(createJob, itIPath);
             SequenceFileOutputFormat.setOutputPath(createJob, itOPath);
 
-            // Submit job
-            if (!createJob.waitForCompletion(true)) {
-                throw new IOException("MapReduce execution failed, please check " + createJob.getTrackingURL());
-            }
-
-            // Retrieve counters
-            canopies = createJob.getCounters().findCounter(
+            // Submit job and retrieve counters
+            Counters counters = runJob(createJob, metrics);
+            canopies = counters.findCounter(
                     CanopyCreateReducer.COUNTER,
                     CanopyCreateReducer.COUNTER_CANOPY).getValue();
+            LOGGER.info("{} canopies created, {} rejected", canopies, counters.findCounter(
+                    CanopyCreateReducer.COUNTER,
+                    CanopyCreateReducer.COUNTER_REJECTED_CANOPY).getValue());
 
             // Make sure we have at least one canopy created
             if (canopies == 0) {
@@ -189,12 +268,26 @@ public class CanopyDriver {
                 return 0;
             }
 
-            // Get 2 times less reducers at next step
-            reducers = reducers / 2;
+            if (adaptive && !lastIteration) {
+
+                // Pick reducers from canopy counts only (no rejection before last iteration),
+                // thresholds from remaining iterations
+                reducers = nextReducers(reducers, canopies, previous, convergence,
+                        reducerCanopies, it >= maxIterations);
+                itT1 = nextThreshold(itT1, t1, reducers);
+                itT2 = nextThreshold(itT2, t2, reducers);
+                itTotal = it + iterations(reducers);
+                previous = canopies;
+
+            } else {
+
+                // Get 2 times less reducers at next step
+                reducers = reducers / 2;
 
-            // Get slightly larger clusters at next step
-            itT1 = itT1 + itT1Increase;
-            itT2 = itT2 + itT2Increase;
+                // Get slightly larger clusters at next step
+                itT1 = itT1 + itT1Increase;
+                itT2 = itT2 + itT2Increase;
+            }
 
             // Output of previous job will be input as next one
             itIPath = itOPath;
@@ -215,8 +308,356 @@ public class CanopyDriver {
             LOGGER.info("{} canopies available on {}", canopies, output);
         }
 
+        // Flat copy of canopies for clusterData mappers to map in memory
+        writeCenterStore(conf, output);
+        writeMetrics(conf, output, metrics);
+
+        return canopies;
+
+    }
+
+    /**
+     * Number of reducers of the next iteration (see ADAPTIVE). Reducers are
+     * halved, unless more are required to keep at most reducerCanopies
+     * canopies per reducer. Once the number of canopies converges (i.e. less
+     * than 1 - convergence of them were merged by the last iteration) and fits
+     * in a single reducer, last iteration is run straight away.
+     * <p/>
+     * Only canopy counts are taken into account. Rejected canopies are not,
+     * as MIN_OBSERVATIONS is only enforced by the last iteration, after
+     * which there is no schedule left to adapt.
+     *
+     * @param reducers        the number of reducers of the last iteration
+     * @param canopies        the number of canopies created by the last iteration
+     * @param previous        the number of canopies created by the iteration before,
+     *                        0 if none
+     * @param convergence     the ratio of canopies above which they converged
+     * @param reducerCanopies the maximum number of canopies per reducer
+     * @param force           true if reducers must be halved whatever the canopies
+     * @return the number of reducers of the next iteration
+     */
+    static int nextReducers(int reducers, long canopies, long previous, float convergence,
+                            long reducerCanopies, boolean force) {
+
+        if (previous > 0 && canopies >= convergence * previous && canopies <= reducerCanopies) {
+            LOGGER.info("Canopies converged ({} -> {}), running last iteration", previous, canopies);
+            return 1;
+        }
+        int next = reducers / 2;
+        if (!force) {
+            long required = (canopies + reducerCanopies - 1) / reducerCanopies;
+            next = (int) Math.max(next, Math.min(reducers, required));
+        }
+        return Math.max(next, 1);
+    }
+
+    /**
+     * Threshold of the next iteration, so that target is reached in as many
+     * equal steps as iterations remain.
+     *
+     * @param current  the threshold of the last iteration
+     * @param target   the final threshold
+     * @param reducers the number of reducers of the next iteration
+     * @return the threshold of the next iteration
+     */
+    static float nextThreshold(float current, float target, int reducers) {
+        return current + (target - current) / iterations(reducers);
+    }
+
+    private static int iterations(int reducers) {
+        return (int) Math.floor(Math.log(reducers) / Math.log(2)) + 1;
+    }
+
+    /**
+     * Create canopies with a single job (see SINGLE_PASS). Each mapper creates
+     * canopies out of its split, refines their centers locally and emits one
+     * summary per canopy. A single reducer merges all summaries using {T1,T2}
+     * and rejects canopies with less than CF observations.
+     *
+     * @param conf    the Hadoop Configuration
+     * @param input   the Path containing input arrays
+     * @param output  the final Path where clusters will be written to
+     * @param measure the DistanceMeasure
+     * @param t1      the float CLUSTER_T1 distance metric
+     * @param t2      the float CLUSTER_T2 distance metric
+     * @param cf      the minimum observations per cluster
+     * @return the number of created canopies
+     */
+    private static long createSinglePass(Configuration conf, Path input, Path output,
+                                         DistanceMeasure measure, float t1, float t2, long cf,
+                                         List<Map<String, Object>> metrics)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, t1);
+        conf.setFloat(Canopy.CLUSTER_T2, t2);
+        conf.setFloat(Canopy.MAX_DISTANCE, t1);
+        conf.setBoolean(Canopy.LAST_ITERATION, true);
+        conf.setLong(Canopy.MIN_OBSERVATIONS, cf);
+
+        String name = "Create clusters - single pass";
+        LOGGER.info("************************************");
+        LOGGER.info("Job      : {}", name);
+        LOGGER.info("Reducers : {}", 1);
+        LOGGER.info("Input    : {}", input.toString());
+        LOGGER.info("Output   : {}", output.toString());
+        LOGGER.info("T1       : {}", round(t1));
+        LOGGER.info("T2       : {}", round(t2));
+        LOGGER.info("MinObs.  : {}", cf);
+        LOGGER.info("************************************");
+
+        // Prepare job
+        Job createJob = new Job(conf, name);
+        createJob.setMapperClass(CanopyCreateInitMapper.class);
+        createJob.setReducerClass(CanopyMergeReducer.class);
+        createJob.setJarByClass(CanopyDriver.class);
+        createJob.setNumReduceTasks(1);
+        createJob.setMapOutputKeyClass(CenterWritable.class);
+        createJob.setMapOutputValueClass(CanopyWritable.class);
+        createJob.setOutputKeyClass(Text.class);
+        createJob.setOutputValueClass(CanopyWritable.class);
+        createJob.setInputFormatClass(SequenceFileInputFormat.class);
+        createJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+        SequenceFileInputFormat.addInputPath(createJob, input);
+        SequenceFileOutputFormat.setOutputPath(createJob, output);
+
+        // Submit job and retrieve counters
+        return runJob(createJob, metrics).findCounter(
+                CanopyCreateReducer.COUNTER,
+                CanopyCreateReducer.COUNTER_CANOPY).getValue();
+    }
+
+    /**
+     * Update a directory of Canopies built by buildClusters with new points
+     * only, rather than rebuilding canopies out of the whole history. Existing
+     * canopies (seeds) are added to distributed cache, a single job assigns
+     * each new point to its nearest seed (see CanopyUpdateMapper) and clusters
+     * the others into new canopies (see CanopyUpdateReducer). Seeds keep their
+     * id and gain the observations of their new points within T2, new canopies
+     * with less than CF observations are rejected. When INCREMENTAL_RECENTER
+     * is set, centers of the updated seeds are recomputed as well.
+     * When DEDUP is set, identical new points are first collapsed.
+     * Note that new canopies created by distinct mappers are not merged
+     * together, a periodic rebuild with buildClusters is still advised.
+     * <p/>
+     * - Input should be of <key>WritableComparable</key> and <value>ArrayPrimitiveWritable</value>
+     * - Input should be of <format>SequenceFile</format>
+     * <p/>
+     * - Output will be of <key>Text (dummy)</key> and <value>CanopyWritable</value>
+     * - Output will be of <format>SequenceFile</format>
+     *
+     * @param conf        the Hadoop Configuration
+     * @param input       the Path containing new input arrays only
+     * @param clusterPath the path where clusters have been written
+     * @param output      the Path where updated clusters will be written to
+     * @param reducers    the number of reducers to use (at least 1)
+     * @param measure     the DistanceMeasure
+     * @param t1          the float CLUSTER_T1 distance metric
+     * @param t2          the float CLUSTER_T2 distance metric
+     * @param cf          the minimum observations per new cluster
+     * @return the number of canopies, updated or not
+     */
+    public static long updateClusters(Configuration conf, Path input, Path clusterPath,
+                                      Path output, int reducers,
+                                      DistanceMeasure measure,
+                                      float t1, float t2, long cf)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        FileSystem fileSystem = FileSystem.get(conf);
+        if (reducers < 1) {
+            throw new IllegalArgumentException("Number of reducers must be greater or equals to 1");
+        }
+
+        // Make sure cluster directory exists and output does not
+        if (!fileSystem.exists(clusterPath)) {
+            throw new IOException("Clusters directory [" + clusterPath + "] does not exist");
+        }
+        if (fileSystem.exists(output)) {
+            throw new IOException("Output path " + output + " already exists");
+        }
+
+        // Retrieve seed files, or their center store
+        FileStatus[] fss = listClusterFiles(fileSystem, clusterPath);
+        Path storePath = new Path(clusterPath, CenterStore.FILE_NAME);
+        if (fileSystem.exists(storePath)) {
+            fss = new FileStatus[]{fileSystem.getFileStatus(storePath)};
+        }
+        if (fss.length == 0) {
+            throw new IOException("Clusters sequence file(s) do not exist in directory [" + clusterPath + "]");
+        }
+
+        // Optionally collapse identical points first
+        Path tmp = null;
+        List<Map<String, Object>> metrics = new ArrayList<Map<String, Object>>();
+        if (conf.getBoolean(Canopy.DEDUP, false)) {
+            tmp = new Path("/tmp/CLUSTERING-" + UUID.randomUUID().toString().toUpperCase());
+            Path dedupPath = new Path(tmp, "dedup");
+            dedupPoints(conf, input, dedupPath, reducers, false, metrics);
+            input = dedupPath;
+        }
+
+        String name = "Update clusters - 1/1";
+        LOGGER.info("************************************");
+        LOGGER.info("Job      : {}", name);
+        LOGGER.info("Reducers : {}", reducers);
+        LOGGER.info("Input    : {}", input.toString());
+        LOGGER.info("Output   : {}", output.toString());
+        LOGGER.info("T1       : {}", round(t1));
+        LOGGER.info("T2       : {}", round(t2));
+        LOGGER.info("MinObs.  : {}", cf);
+        LOGGER.info("Recenter : {}", conf.getBoolean(Canopy.INCREMENTAL_RECENTER, false));
+
+        // Add each seed file to distributed cache
+        conf.set(ClusterDataMapper.CLUSTERS_FINAL_DIR_CONF, clusterPath.toString());
+        for (FileStatus fs : fss) {
+            LOGGER.info("Cache    : {}", fs.getPath());
+            DistributedCache.addCacheFile(fs.getPath().toUri(), conf);
+        }
+
+        LOGGER.info("************************************");
+
+        // Add job specific configuration
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, t1);
+        conf.setFloat(Canopy.CLUSTER_T2, t2);
+        conf.setFloat(Canopy.MAX_DISTANCE, t1);
+        conf.setLong(Canopy.MIN_OBSERVATIONS, cf);
+
+        // Prepare job, seeds are owned by the reducer their center is hashed to
+        Job updateJob = new Job(conf, name);
+        updateJob.setMapperClass(CanopyUpdateMapper.class);
+        updateJob.setReducerClass(CanopyUpdateReducer.class);
+        updateJob.setJarByClass(CanopyDriver.class);
+        updateJob.setNumReduceTasks(reducers);
+        updateJob.setMapOutputKeyClass(CenterWritable.class);
+        updateJob.setMapOutputValueClass(CanopyWritable.class);
+        updateJob.setOutputKeyClass(Text.class);
+        updateJob.setOutputValueClass(CanopyWritable.class);
+        updateJob.setInputFormatClass(SequenceFileInputFormat.class);
+        updateJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+        SequenceFileInputFormat.addInputPath(updateJob, input);
+        SequenceFileOutputFormat.setOutputPath(updateJob, output);
+
+        // Submit job and retrieve counters
+        Counters counters = runJob(updateJob, metrics);
+        long canopies = counters.findCounter(
+                CanopyCreateReducer.COUNTER,
+                CanopyCreateReducer.COUNTER_CANOPY).getValue();
+        LOGGER.info("{} canopies updated, {} created, {} rejected", new Object[]{
+                counters.findCounter(CanopyCreateReducer.COUNTER,
+                        CanopyUpdateReducer.COUNTER_UPDATED_CANOPY).getValue(),
+                counters.findCounter(CanopyCreateReducer.COUNTER,
+                        CanopyUpdateReducer.COUNTER_NEW_CANOPY).getValue(),
+                counters.findCounter(CanopyCreateReducer.COUNTER,
+                        CanopyCreateReducer.COUNTER_REJECTED_CANOPY).getValue()});
+
+        // Delete temporary directory
+        if (tmp != null && fileSystem.exists(tmp)) {
+            fileSystem.delete(tmp, true);
+        }
+
+        LOGGER.info("{} canopies available on {}", canopies, output);
+        writeCenterStore(conf, output);
+        writeMetrics(conf, output, metrics);
         return canopies;
+    }
+
+    /**
+     * Sort points according to their MinHash LSH bucket (see MinHashMapper),
+     * so that the first canopy iteration reads splits of similar points
+     * rather than randomly distributed ones.
+     * <p/>
+     * - Output will be of <key>LongWritable (bucket)</key> and <value>ArrayPrimitiveWritable</value>
+     * - Output will be of <format>SequenceFile</format>
+     *
+     * @param conf     the Hadoop Configuration
+     * @param input    the Path containing input arrays
+     * @param output   the Path where bucketed arrays will be written to
+     * @param reducers the number of reducers to use (at least 1)
+     */
+    private static void bucketPoints(Configuration conf, Path input, Path output, int reducers,
+                                     List<Map<String, Object>> metrics)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        String name = "Bucket points - LSH";
+        LOGGER.info("************************************");
+        LOGGER.info("Job      : {}", name);
+        LOGGER.info("Reducers : {}", reducers);
+        LOGGER.info("Input    : {}", input.toString());
+        LOGGER.info("Output   : {}", output.toString());
+        LOGGER.info("Bands    : {}", conf.getInt(Canopy.MINHASH_BANDS, 0));
+        LOGGER.info("Rows     : {}", conf.getInt(Canopy.MINHASH_ROWS, 4));
+        LOGGER.info("************************************");
+
+        // Prepare job, identity reducer only sorts points by bucket
+        Job bucketJob = new Job(conf, name);
+        bucketJob.setMapperClass(MinHashMapper.class);
+        bucketJob.setReducerClass(Reducer.class);
+        bucketJob.setJarByClass(CanopyDriver.class);
+        bucketJob.setNumReduceTasks(reducers);
+        bucketJob.setMapOutputKeyClass(LongWritable.class);
+        bucketJob.setMapOutputValueClass(ArrayPrimitiveWritable.class);
+        bucketJob.setOutputKeyClass(LongWritable.class);
+        bucketJob.setOutputValueClass(ArrayPrimitiveWritable.class);
+        bucketJob.setInputFormatClass(SequenceFileInputFormat.class);
+        bucketJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+        SequenceFileInputFormat.addInputPath(bucketJob, input);
+        SequenceFileOutputFormat.setOutputPath(bucketJob, output);
+
+        // Submit job
+        runJob(bucketJob, metrics);
+    }
+
+    /**
+     * Collapse identical points into a single representative (see DEDUP),
+     * keyed by their number of duplicates and optionally by their original
+     * keys (see DuplicatesWritable). Points are partitioned by the hash of
+     * their content, and merged by a combiner first.
+     * <p/>
+     * - Output will be of <key>DuplicatesWritable</key> and <value>ArrayPrimitiveWritable</value>
+     * - Output will be of <format>SequenceFile</format>
+     *
+     * @param conf     the Hadoop Configuration
+     * @param input    the Path containing input arrays
+     * @param output   the Path where deduplicated arrays will be written to
+     * @param reducers the number of reducers to use (at least 1)
+     * @param keepKeys true if original keys must be kept
+     */
+    private static void dedupPoints(Configuration conf, Path input, Path output, int reducers,
+                                    boolean keepKeys, List<Map<String, Object>> metrics)
+            throws IOException, InterruptedException, ClassNotFoundException {
 
+        String name = "Deduplicate points";
+        LOGGER.info("************************************");
+        LOGGER.info("Job      : {}", name);
+        LOGGER.info("Reducers : {}", reducers);
+        LOGGER.info("Input    : {}", input.toString());
+        LOGGER.info("Output   : {}", output.toString());
+        LOGGER.info("Keys     : {}", keepKeys);
+        LOGGER.info("************************************");
+
+        // Prepare job
+        Job dedupJob = new Job(conf, name);
+        dedupJob.getConfiguration().setBoolean(DedupMapper.KEEP_KEYS_CONF, keepKeys);
+        dedupJob.setMapperClass(DedupMapper.class);
+        dedupJob.setCombinerClass(DedupCombiner.class);
+        dedupJob.setReducerClass(DedupReducer.class);
+        dedupJob.setJarByClass(CanopyDriver.class);
+        dedupJob.setNumReduceTasks(reducers);
+        dedupJob.setMapOutputKeyClass(CenterWritable.class);
+        dedupJob.setMapOutputValueClass(DuplicatesWritable.class);
+        dedupJob.setOutputKeyClass(DuplicatesWritable.class);
+        dedupJob.setOutputValueClass(ArrayPrimitiveWritable.class);
+        dedupJob.setInputFormatClass(SequenceFileInputFormat.class);
+        dedupJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+        SequenceFileInputFormat.addInputPath(dedupJob, input);
+        SequenceFileOutputFormat.setOutputPath(dedupJob, output);
+
+        // Submit job and retrieve counters
+        Counters counters = runJob(dedupJob, metrics);
+        LOGGER.info("{} distinct points, {} duplicates collapsed",
+                counters.findCounter(DedupReducer.COUNTER, DedupReducer.COUNTER_DISTINCT).getValue(),
+                counters.findCounter(DedupReducer.COUNTER, DedupReducer.COUNTER_DUPLICATES).getValue());
     }
 
     /**
@@ -226,6 +667,12 @@ public class CanopyDriver {
      * at previous steps) are added to Distributed cache. The output Key will be
      * the ID of the cluster a point belongs to, and value will be the original Key
      * of the data point (can be any class WritableComparable).
+     * When DEDUP is set, identical points are looked up once, and assigned
+     * to each of their original keys.
+     * With 0 reducers, the job is map-only and points are not grouped by
+     * cluster. Setting OUTPUT_BUCKETS then writes points to that many
+     * sub-directories of dataPath instead, according to their cluster id
+     * (see ClusterDataMapper).
      * <p/>
      * - Input should be of <key>WritableComparable</key> and <value>ArrayPrimitiveWritable</value>
      * - Input should be of <format>SequenceFile</format>
@@ -239,7 +686,7 @@ public class CanopyDriver {
      * @param clusterPath   the path where clusters have been written
      * @param measure       the DistanceMeasure
      * @param minSimilarity the minimum similarity to cluster data
-     * @param reducers      the number of reducers to use (at least 1)
+     * @param reducers      the number of reducers to use, 0 for a map-only job
      */
     public static void clusterData(Configuration conf, Path inputData,
                                    Path dataPath, Path clusterPath,
@@ -250,6 +697,10 @@ public class CanopyDriver {
         // Retrieve cluster information
         FileSystem fileSystem = FileSystem.get(conf);
 
+        if (reducers < 0) {
+            throw new IllegalArgumentException("Number of reducers must be greater or equals to 0");
+        }
+
         // Make sure cluster directory exists
         if (!fileSystem.exists(clusterPath)) {
             throw new IOException("Clusters directory [" + clusterPath + "] does not exist");
@@ -260,19 +711,27 @@ public class CanopyDriver {
             throw new IOException("Data directory [" + dataPath + "] already exists");
         }
 
-        // Retrieve cluster's files (in theory only one)
-        FileStatus[] fss = fileSystem.listStatus(clusterPath, new PathFilter() {
-            @Override
-            public boolean accept(Path path) {
-                String name = path.getName();
-                return name.contains("part-r");
-            }
-        });
+        // Retrieve cluster's files (in theory only one), or their center store
+        FileStatus[] fss = listClusterFiles(fileSystem, clusterPath);
+        Path storePath = new Path(clusterPath, CenterStore.FILE_NAME);
+        if (fileSystem.exists(storePath)) {
+            fss = new FileStatus[]{fileSystem.getFileStatus(storePath)};
+        }
 
         if (fss.length == 0) {
             throw new IOException("Clusters sequence file(s) do not exist in directory [" + clusterPath + "]");
         }
 
+        // Optionally collapse identical points first, keeping their keys
+        Path tmp = null;
+        List<Map<String, Object>> metrics = new ArrayList<Map<String, Object>>();
+        if (conf.getBoolean(Canopy.DEDUP, false)) {
+            tmp = new Path("/tmp/CLUSTERING-" + UUID.randomUUID().toString().toUpperCase());
+            Path dedupPath = new Path(tmp, "dedup");
+            dedupPoints(conf, inputData, dedupPath, Math.max(reducers, 1), true, metrics);
+            inputData = dedupPath;
+        }
+
         String name = "Clustering data - 1/1";
         LOGGER.info("************************************");
         LOGGER.info("Job      : {}", name);
@@ -281,6 +740,9 @@ public class CanopyDriver {
         LOGGER.info("Output   : {}", dataPath.toString());
         LOGGER.info("MinSim.  : {}", minSimilarity);
         LOGGER.info("MaxDis.  : {}", minSimilarity);
+        if (reducers == 0) {
+            LOGGER.info("Buckets  : {}", conf.getInt(Canopy.OUTPUT_BUCKETS, 0));
+        }
 
         // Add each cluster file to distributed cache
         conf.set(ClusterDataMapper.CLUSTERS_FINAL_DIR_CONF, clusterPath.toString());
@@ -300,7 +762,10 @@ public class CanopyDriver {
         // Prepare job
         Job clusterJob = new Job(conf, name);
         clusterJob.setMapperClass(ClusterDataMapper.class);
-        clusterJob.setReducerClass(ClusterDataReducer.class);
+        if (reducers > 0) {
+            // Identity reducer only groups points by cluster
+            clusterJob.setReducerClass(ClusterDataReducer.class);
+        }
         clusterJob.setJarByClass(CanopyDriver.class);
         clusterJob.setNumReduceTasks(reducers);
         clusterJob.setMapOutputKeyClass(IntWritable.class);
@@ -312,13 +777,8 @@ public class CanopyDriver {
         SequenceFileInputFormat.addInputPath(clusterJob, inputData);
         SequenceFileOutputFormat.setOutputPath(clusterJob, dataPath);
 
-        // Submit job
-        if (!clusterJob.waitForCompletion(true)) {
-            throw new IOException("MapReduce execution failed, please check " + clusterJob.getTrackingURL());
-        }
-
-        // Retrieve counters
-        long clusteredPoints = clusterJob.getCounters().findCounter(
+        // Submit job and retrieve counters
+        long clusteredPoints = runJob(clusterJob, metrics).findCounter(
                 ClusterDataMapper.COUNTER,
                 ClusterDataMapper.COUNTER_CLUSTERED).getValue();
 
@@ -328,6 +788,118 @@ public class CanopyDriver {
         } else {
             LOGGER.info("{} points have been clustered - Data available on {}", clusteredPoints, dataPath);
         }
+
+        // Delete temporary directory
+        if (tmp != null && fileSystem.exists(tmp)) {
+            fileSystem.delete(tmp, true);
+        }
+        writeMetrics(conf, dataPath, metrics);
+    }
+
+    /**
+     * Run job on the cluster, or within the current JVM (see LocalEngine)
+     * when ENGINE is set to "local".
+     *
+     * @param job the configured Job
+     * @return the counters of the completed job
+     */
+    private static Counters runJob(Job job, List<Map<String, Object>> metrics)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        Configuration conf = job.getConfiguration();
+        long start = System.currentTimeMillis();
+        Counters counters;
+        if (LOCAL_ENGINE.equals(conf.get(Canopy.ENGINE, MAPREDUCE_ENGINE))) {
+            int threads = conf.getInt(Canopy.LOCAL_THREADS, Runtime.getRuntime().availableProcessors());
+            LOGGER.info("Running job [{}] locally", job.getJobName());
+            counters = new LocalEngine(job, threads).run();
+        } else {
+            if (!job.waitForCompletion(true)) {
+                throw new IOException("MapReduce execution failed, please check " + job.getTrackingURL());
+            }
+            counters = job.getCounters();
+        }
+
+        // Keep a summary of the job for the metrics file
+        if (conf.getBoolean(Canopy.INSTRUMENT, false)) {
+            Map<String, Object> summary = new LinkedHashMap<String, Object>();
+            summary.put("job", job.getJobName());
+            summary.put("millis", System.currentTimeMillis() - start);
+            for (String group : new String[]{CanopyCreateReducer.COUNTER, Instrumentation.COUNTER}) {
+                Map<String, Long> values = new TreeMap<String, Long>();
+                for (Counter counter : counters.getGroup(group)) {
+                    values.put(counter.getName(), counter.getValue());
+                }
+                summary.put(group, values);
+            }
+            metrics.add(summary);
+        }
+        return counters;
+    }
+
+    /**
+     * Write the summary of jobs as a JSON array (see METRICS_FILE_NAME), when
+     * INSTRUMENT is set.
+     *
+     * @param conf    the Configuration
+     * @param output  the output directory of the last job
+     * @param metrics the summaries of the jobs
+     */
+    private static void writeMetrics(Configuration conf, Path output, List<Map<String, Object>> metrics)
+            throws IOException {
+
+        if (metrics.isEmpty()) {
+            return;
+        }
+        Path metricsPath = new Path(output, METRICS_FILE_NAME);
+        FileSystem fileSystem = FileSystem.get(conf);
+        Writer writer = new OutputStreamWriter(fileSystem.create(metricsPath, true), Charset.forName("UTF-8"));
+        try {
+            new GsonBuilder().setPrettyPrinting().create().toJson(metrics, writer);
+        } finally {
+            writer.close();
+        }
+        LOGGER.info("Metrics of {} job(s) written to {}", metrics.size(), metricsPath);
+    }
+
+    private static FileStatus[] listClusterFiles(FileSystem fileSystem, Path clusterPath)
+            throws IOException {
+        return fileSystem.listStatus(clusterPath, new PathFilter() {
+            @Override
+            public boolean accept(Path path) {
+                String name = path.getName();
+                return name.contains("part-r");
+            }
+        });
+    }
+
+    /**
+     * Copy canopies written in clusterPath into a flat CenterStore file
+     * (see CenterStore.FILE_NAME) that can be memory mapped.
+     *
+     * @param conf        the Configuration
+     * @param clusterPath the path where clusters have been written
+     */
+    public static void writeCenterStore(Configuration conf, Path clusterPath) throws IOException {
+
+        FileSystem fileSystem = FileSystem.get(conf);
+        List<Cluster> clusters = new ArrayList<Cluster>();
+        for (FileStatus fs : listClusterFiles(fileSystem, clusterPath)) {
+            SequenceFile.Reader reader = new SequenceFile.Reader(fileSystem, fs.getPath(), conf);
+            try {
+                Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+                CanopyWritable value = new CanopyWritable();
+                while (reader.next(key, value)) {
+                    clusters.add(value.get());
+                }
+            } finally {
+                IOUtils.closeStream(reader);
+            }
+        }
+
+        Path storePath = new Path(clusterPath, CenterStore.FILE_NAME);
+        CenterStore.write(fileSystem, storePath, clusters);
+        LOGGER.info("{} canopies written to center store {}", clusters.size(), storePath);
     }
 
     private static float round(float val) {
@@ -0,0 +1,448 @@
+package com.aamend.hadoop.clustering.job;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Execute a configured Job within the current JVM, without submitting it to
+ * the cluster. Input splits are read by map tasks running in a thread pool,
+ * map output is kept serialized in memory (optionally combined per map task),
+ * sorted per partition and fed to reduce tasks running in the same pool.
+ * Job's mapper, combiner, reducer, partitioner, comparators, input and
+ * output formats are used as they would on a cluster, so that output files
+ * and counters are the same. Whole map output must fit in memory. As
+ * tasks of a same job run concurrently in the same JVM, mappers and reducers
+ * must not hold mutable state (e.g. reused output keys) in static fields.
+ * <p/>
+ * Tasks run with contexts of their own (see LocalTaskContext) rather than
+ * the framework context implementations, which are internal to MR2 and not
+ * shipped by MR1 hadoop-core: only the public MapReduce API is required.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class LocalEngine {
+
+    private static final String COUNTER = "local";
+    private static final String COUNTER_INPUT_GROUPS = "reduce.input.groups";
+    private static final String COUNTER_INPUT_RECORDS = "reduce.input.records";
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEngine.class);
+
+    private final Job job;
+    private final Configuration conf;
+    private final int threads;
+    private final Counters counters = new Counters();
+
+    /**
+     * @param job     the configured (not submitted) Job
+     * @param threads the number of tasks running at the same time
+     */
+    public LocalEngine(Job job, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be greater or equals to 1");
+        }
+        this.job = job;
+        this.conf = job.getConfiguration();
+        this.threads = threads;
+    }
+
+    /**
+     * Run the job until completion
+     *
+     * @return the job counters
+     */
+    public Counters run() throws IOException, InterruptedException, ClassNotFoundException {
+
+        final int reducers = job.getNumReduceTasks();
+        OutputFormat<?, ?> outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+        outputFormat.checkOutputSpecs(job);
+        OutputCommitter committer = outputFormat.getOutputCommitter(
+                new LocalTaskContext(job, new TaskAttemptID("local", 0, TaskType.JOB_SETUP, 0, 0), new Reporter()));
+        committer.setupJob(job);
+
+        InputFormat<?, ?> inputFormat = ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+        List<InputSplit> splits = inputFormat.getSplits(job);
+        LOGGER.info("Running {} map task(s) and {} reduce task(s) locally using {} thread(s)",
+                new Object[]{splits.size(), reducers, threads});
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "local-engine");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+
+            // Map phase, each task returns its output per partition
+            List<Callable<Records[]>> maps = new ArrayList<Callable<Records[]>>(splits.size());
+            for (int i = 0; i < splits.size(); i++) {
+                final InputSplit split = splits.get(i);
+                final TaskAttemptID id = new TaskAttemptID("local", 0, TaskType.MAP, i, 0);
+                maps.add(new Callable<Records[]>() {
+                    @Override
+                    public Records[] call() throws Exception {
+                        return runMapper(split, id, reducers);
+                    }
+                });
+            }
+            List<Records[]> mapOutputs = invokeAll(executor, maps);
+
+            // Reduce phase, map outputs are merged in map tasks order
+            List<Callable<Void>> reduces = new ArrayList<Callable<Void>>(reducers);
+            for (int i = 0; i < reducers; i++) {
+                final Records input = new Records();
+                for (Records[] mapOutput : mapOutputs) {
+                    input.addAll(mapOutput[i]);
+                    mapOutput[i] = null;
+                }
+                final TaskAttemptID id = new TaskAttemptID("local", 0, TaskType.REDUCE, i, 0);
+                reduces.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runReducer(input, id);
+                        return null;
+                    }
+                });
+            }
+            mapOutputs.clear();
+            invokeAll(executor, reduces);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        committer.commitJob(job);
+        return counters;
+    }
+
+    private <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks)
+            throws IOException, InterruptedException {
+
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException("Local execution failed", t);
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Records[] runMapper(InputSplit split, TaskAttemptID id, int reducers)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        Reporter reporter = new Reporter();
+        LocalTaskContext taskContext = new LocalTaskContext(job, id, reporter);
+        InputFormat inputFormat = ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+        RecordReader reader = inputFormat.createRecordReader(split, taskContext);
+
+        // Map only job writes directly to the final output
+        Records[] partitions = new Records[reducers];
+        OutputCommitter committer = null;
+        RecordWriter writer;
+        if (reducers == 0) {
+            OutputFormat outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+            committer = outputFormat.getOutputCommitter(taskContext);
+            committer.setupTask(taskContext);
+            writer = outputFormat.getRecordWriter(taskContext);
+        } else {
+            for (int i = 0; i < reducers; i++) {
+                partitions[i] = new Records();
+            }
+            Partitioner partitioner = ReflectionUtils.newInstance(job.getPartitionerClass(), conf);
+            writer = new MapOutputWriter(partitions, partitioner);
+        }
+
+        Mapper mapper = ReflectionUtils.newInstance(job.getMapperClass(), conf);
+        Mapper.Context mapContext = new LocalMapper().getMapContext(taskContext, reader, writer, committer, split);
+        reader.initialize(split, mapContext);
+        try {
+            mapper.run(mapContext);
+        } finally {
+            reader.close();
+            writer.close(taskContext);
+        }
+
+        if (reducers == 0) {
+            commitTask(committer, taskContext);
+        } else if (job.getCombinerClass() != null) {
+            for (int i = 0; i < reducers; i++) {
+                Records combined = new Records();
+                reduce(job.getCombinerClass(), partitions[i], id, new RecordsWriter(combined), null, reporter);
+                partitions[i] = combined;
+            }
+        }
+
+        merge(reporter);
+        return partitions;
+    }
+
+    private void runReducer(Records input, TaskAttemptID id)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        // Output formats keep the committer (hence work path) of their first task
+        Reporter reporter = new Reporter();
+        LocalTaskContext taskContext = new LocalTaskContext(job, id, reporter);
+        OutputFormat<?, ?> outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+        OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+        committer.setupTask(taskContext);
+        RecordWriter<?, ?> writer = outputFormat.getRecordWriter(taskContext);
+        try {
+            reduce(job.getReducerClass(), input, id, writer, committer, reporter);
+        } finally {
+            writer.close(taskContext);
+        }
+        commitTask(committer, taskContext);
+        merge(reporter);
+    }
+
+    private static void commitTask(OutputCommitter committer, TaskAttemptContext taskContext)
+            throws IOException {
+        if (committer.needsTaskCommit(taskContext)) {
+            committer.commitTask(taskContext);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reduce(Class<? extends Reducer> reducerClass, Records input, TaskAttemptID id,
+                        RecordWriter writer, OutputCommitter committer, Reporter reporter)
+            throws IOException, InterruptedException {
+
+        RawComparator sortComparator = job.getSortComparator();
+        RawComparator groupingComparator = job.getGroupingComparator();
+        Reducer reducer = ReflectionUtils.newInstance(reducerClass, conf);
+        Reducer.Context reduceContext = new LocalReducer().getReduceContext(
+                new LocalTaskContext(job, id, reporter), input.sort(sortComparator), groupingComparator,
+                job.getMapOutputKeyClass(), job.getMapOutputValueClass(),
+                reporter.getCounter(COUNTER, COUNTER_INPUT_GROUPS),
+                reporter.getCounter(COUNTER, COUNTER_INPUT_RECORDS),
+                writer, committer);
+        reducer.run(reduceContext);
+    }
+
+    private void merge(Reporter reporter) {
+        synchronized (counters) {
+            counters.incrAllCounters(reporter.counters);
+        }
+    }
+
+    /**
+     * Counters of a single task
+     */
+    private static class Reporter extends StatusReporter {
+
+        private final Counters counters = new Counters();
+
+        @Override
+        public Counter getCounter(Enum<?> name) {
+            return counters.findCounter(name);
+        }
+
+        @Override
+        public Counter getCounter(String group, String name) {
+            return counters.findCounter(group, name);
+        }
+
+        @Override
+        public void progress() {
+        }
+
+        public float getProgress() {
+            return 0.0f;
+        }
+
+        @Override
+        public void setStatus(String status) {
+        }
+    }
+
+    /**
+     * Serialized key value pairs, appended one after the other
+     */
+    private static class Records {
+
+        private final DataOutputBuffer data = new DataOutputBuffer();
+        private int[] starts = new int[16];
+        private int[] keyEnds = new int[16];
+        private int[] ends = new int[16];
+        private int size;
+
+        private void add(Writable key, Writable value) throws IOException {
+            grow();
+            starts[size] = data.getLength();
+            key.write(data);
+            keyEnds[size] = data.getLength();
+            value.write(data);
+            ends[size] = data.getLength();
+            size++;
+        }
+
+        private void addAll(Records other) throws IOException {
+            int shift = data.getLength();
+            data.write(other.data.getData(), 0, other.data.getLength());
+            for (int i = 0; i < other.size; i++) {
+                grow();
+                starts[size] = other.starts[i] + shift;
+                keyEnds[size] = other.keyEnds[i] + shift;
+                ends[size] = other.ends[i] + shift;
+                size++;
+            }
+        }
+
+        private void grow() {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                keyEnds = Arrays.copyOf(keyEnds, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+            }
+        }
+
+        /**
+         * @return an iterator on records sorted by key, records with equal
+         * keys remaining in insertion order
+         */
+        private LocalReducer.SortedRecords sort(final RawComparator comparator) {
+            final byte[] bytes = data.getData();
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // Merge sort, hence stable
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(Integer a, Integer b) {
+                    return comparator.compare(
+                            bytes, starts[a], keyEnds[a] - starts[a],
+                            bytes, starts[b], keyEnds[b] - starts[b]);
+                }
+            });
+            return new SortedIterator(this, order);
+        }
+    }
+
+    private static class SortedIterator implements LocalReducer.SortedRecords {
+
+        private final Records records;
+        private final Integer[] order;
+        private final DataInputBuffer key = new DataInputBuffer();
+        private final DataInputBuffer value = new DataInputBuffer();
+        private int next;
+
+        private SortedIterator(Records records, Integer[] order) {
+            this.records = records;
+            this.order = order;
+        }
+
+        @Override
+        public DataInputBuffer getKey() {
+            return key;
+        }
+
+        @Override
+        public DataInputBuffer getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean next() {
+            if (next == order.length) {
+                return false;
+            }
+            int i = order[next++];
+            byte[] bytes = records.data.getData();
+            key.reset(bytes, records.starts[i], records.keyEnds[i] - records.starts[i]);
+            value.reset(bytes, records.keyEnds[i], records.ends[i] - records.keyEnds[i]);
+            return true;
+        }
+    }
+
+    private static class RecordsWriter extends RecordWriter<Writable, Writable> {
+
+        private final Records records;
+
+        private RecordsWriter(Records records) {
+            this.records = records;
+        }
+
+        @Override
+        public void write(Writable key, Writable value) throws IOException {
+            records.add(key, value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+        }
+    }
+
+    private static class MapOutputWriter extends RecordWriter<Writable, Writable> {
+
+        private final Records[] partitions;
+        private final Partitioner<Writable, Writable> partitioner;
+
+        private MapOutputWriter(Records[] partitions, Partitioner<Writable, Writable> partitioner) {
+            this.partitions = partitions;
+            this.partitioner = partitioner;
+        }
+
+        @Override
+        public void write(Writable key, Writable value) throws IOException {
+            int partition = partitions.length == 1 ? 0 : partitioner.getPartition(key, value, partitions.length);
+            partitions[partition].add(key, value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+        }
+    }
+}
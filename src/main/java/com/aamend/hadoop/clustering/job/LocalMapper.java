@@ -0,0 +1,257 @@
+package com.aamend.hadoop.clustering.job;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.security.Credentials;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Holder of the Mapper.Context a LocalEngine map task runs a job's mapper
+ * with: input is read from a RecordReader, output written to a RecordWriter
+ * (see LocalTaskContext for the other methods). Never run itself.
+ * <p/>
+ * Date: 17/10/26
+ */
+class LocalMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> {
+
+    /**
+     * @return a context reading split from reader, writing to writer
+     */
+    Context getMapContext(LocalTaskContext task, RecordReader<KEYIN, VALUEIN> reader,
+                          RecordWriter<KEYOUT, VALUEOUT> writer, OutputCommitter committer,
+                          InputSplit split) {
+        return new LocalContext(task, reader, writer, committer, split);
+    }
+
+    private class LocalContext extends Context {
+
+        private final LocalTaskContext task;
+        private final RecordReader<KEYIN, VALUEIN> reader;
+        private final RecordWriter<KEYOUT, VALUEOUT> writer;
+        private final OutputCommitter committer;
+        private final InputSplit split;
+
+        private LocalContext(LocalTaskContext task, RecordReader<KEYIN, VALUEIN> reader,
+                             RecordWriter<KEYOUT, VALUEOUT> writer, OutputCommitter committer,
+                             InputSplit split) {
+            this.task = task;
+            this.reader = reader;
+            this.writer = writer;
+            this.committer = committer;
+            this.split = split;
+        }
+
+        // MapContext
+
+        public InputSplit getInputSplit() {
+            return split;
+        }
+
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            return reader.nextKeyValue();
+        }
+
+        public KEYIN getCurrentKey() throws IOException, InterruptedException {
+            return reader.getCurrentKey();
+        }
+
+        public VALUEIN getCurrentValue() throws IOException, InterruptedException {
+            return reader.getCurrentValue();
+        }
+
+        public void write(KEYOUT key, VALUEOUT value) throws IOException, InterruptedException {
+            writer.write(key, value);
+        }
+
+        public OutputCommitter getOutputCommitter() {
+            return committer;
+        }
+
+        public TaskAttemptID getTaskAttemptID() {
+            return task.getTaskAttemptID();
+        }
+
+        public void setStatus(String status) {
+            task.setStatus(status);
+        }
+
+        public String getStatus() {
+            return task.getStatus();
+        }
+
+        public float getProgress() {
+            return task.getProgress();
+        }
+
+        public Counter getCounter(Enum<?> name) {
+            return task.getCounter(name);
+        }
+
+        public Counter getCounter(String group, String name) {
+            return task.getCounter(group, name);
+        }
+
+        public void progress() {
+            task.progress();
+        }
+
+        public Configuration getConfiguration() {
+            return task.getConfiguration();
+        }
+
+        public Credentials getCredentials() {
+            return task.getCredentials();
+        }
+
+        public JobID getJobID() {
+            return task.getJobID();
+        }
+
+        public int getNumReduceTasks() {
+            return task.getNumReduceTasks();
+        }
+
+        public Path getWorkingDirectory() throws IOException {
+            return task.getWorkingDirectory();
+        }
+
+        public Class<?> getOutputKeyClass() {
+            return task.getOutputKeyClass();
+        }
+
+        public Class<?> getOutputValueClass() {
+            return task.getOutputValueClass();
+        }
+
+        public Class<?> getMapOutputKeyClass() {
+            return task.getMapOutputKeyClass();
+        }
+
+        public Class<?> getMapOutputValueClass() {
+            return task.getMapOutputValueClass();
+        }
+
+        public String getJobName() {
+            return task.getJobName();
+        }
+
+        public Class<? extends InputFormat<?, ?>> getInputFormatClass() throws ClassNotFoundException {
+            return task.getInputFormatClass();
+        }
+
+        public Class<? extends Mapper<?, ?, ?, ?>> getMapperClass() throws ClassNotFoundException {
+            return task.getMapperClass();
+        }
+
+        public Class<? extends Reducer<?, ?, ?, ?>> getCombinerClass() throws ClassNotFoundException {
+            return task.getCombinerClass();
+        }
+
+        public Class<? extends Reducer<?, ?, ?, ?>> getReducerClass() throws ClassNotFoundException {
+            return task.getReducerClass();
+        }
+
+        public Class<? extends OutputFormat<?, ?>> getOutputFormatClass() throws ClassNotFoundException {
+            return task.getOutputFormatClass();
+        }
+
+        public Class<? extends Partitioner<?, ?>> getPartitionerClass() throws ClassNotFoundException {
+            return task.getPartitionerClass();
+        }
+
+        public RawComparator<?> getSortComparator() {
+            return task.getSortComparator();
+        }
+
+        public String getJar() {
+            return task.getJar();
+        }
+
+        public RawComparator<?> getGroupingComparator() {
+            return task.getGroupingComparator();
+        }
+
+        public boolean getJobSetupCleanupNeeded() {
+            return task.getJobSetupCleanupNeeded();
+        }
+
+        public boolean getTaskCleanupNeeded() {
+            return task.getTaskCleanupNeeded();
+        }
+
+        public boolean getProfileEnabled() {
+            return task.getProfileEnabled();
+        }
+
+        public String getProfileParams() {
+            return task.getProfileParams();
+        }
+
+        public Configuration.IntegerRanges getProfileTaskRange(boolean isMap) {
+            return task.getProfileTaskRange(isMap);
+        }
+
+        public String getUser() {
+            return task.getUser();
+        }
+
+        public boolean getSymlink() {
+            return task.getSymlink();
+        }
+
+        public Path[] getArchiveClassPaths() {
+            return task.getArchiveClassPaths();
+        }
+
+        public URI[] getCacheArchives() throws IOException {
+            return task.getCacheArchives();
+        }
+
+        public URI[] getCacheFiles() throws IOException {
+            return task.getCacheFiles();
+        }
+
+        public Path[] getLocalCacheArchives() throws IOException {
+            return task.getLocalCacheArchives();
+        }
+
+        public Path[] getLocalCacheFiles() throws IOException {
+            return task.getLocalCacheFiles();
+        }
+
+        public Path[] getFileClassPaths() {
+            return task.getFileClassPaths();
+        }
+
+        public String[] getArchiveTimestamps() {
+            return task.getArchiveTimestamps();
+        }
+
+        public String[] getFileTimestamps() {
+            return task.getFileTimestamps();
+        }
+
+        public int getMaxMapAttempts() {
+            return task.getMaxMapAttempts();
+        }
+
+        public int getMaxReduceAttempts() {
+            return task.getMaxReduceAttempts();
+        }
+    }
+}
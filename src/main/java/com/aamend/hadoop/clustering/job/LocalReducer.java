@@ -0,0 +1,379 @@
+package com.aamend.hadoop.clustering.job;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.security.Credentials;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holder of the Reducer.Context a LocalEngine reduce task (or combiner) runs
+ * a job's reducer with: serialized records, sorted by key, are grouped with
+ * the grouping comparator and deserialized into reused key and value
+ * instances, the same way as on a cluster (see LocalTaskContext for the other
+ * methods). Never run itself.
+ * <p/>
+ * Date: 17/10/26
+ */
+class LocalReducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Reducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT> {
+
+    /**
+     * Serialized records, sorted by key
+     */
+    interface SortedRecords {
+
+        /**
+         * @return false if there is no more record, otherwise key and value
+         * buffers are reset to the next one
+         */
+        boolean next() throws IOException;
+
+        DataInputBuffer getKey();
+
+        DataInputBuffer getValue();
+    }
+
+    /**
+     * @return a context reducing input, writing to writer
+     */
+    Context getReduceContext(LocalTaskContext task, SortedRecords input, RawComparator<KEYIN> comparator,
+                             Class<KEYIN> keyClass, Class<VALUEIN> valueClass, Counter inputGroups,
+                             Counter inputRecords, RecordWriter<KEYOUT, VALUEOUT> writer,
+                             OutputCommitter committer) throws IOException {
+        return new LocalContext(task, input, comparator, keyClass, valueClass, inputGroups, inputRecords,
+                writer, committer);
+    }
+
+    private class LocalContext extends Context {
+
+        private final LocalTaskContext task;
+        private final SortedRecords input;
+        private final RawComparator<KEYIN> comparator;
+        private final Deserializer<KEYIN> keyDeserializer;
+        private final Deserializer<VALUEIN> valueDeserializer;
+        private final Counter inputGroups;
+        private final Counter inputRecords;
+        private final RecordWriter<KEYOUT, VALUEOUT> writer;
+        private final OutputCommitter committer;
+        private final DataOutputBuffer currentRawKey = new DataOutputBuffer();
+        private final ValueIterable values = new ValueIterable();
+
+        private KEYIN key;
+        private VALUEIN value;
+        private boolean hasMore;
+        private boolean nextKeyIsSame;
+        private boolean firstValue;
+
+        private LocalContext(LocalTaskContext task, SortedRecords input, RawComparator<KEYIN> comparator,
+                             Class<KEYIN> keyClass, Class<VALUEIN> valueClass, Counter inputGroups,
+                             Counter inputRecords, RecordWriter<KEYOUT, VALUEOUT> writer,
+                             OutputCommitter committer) throws IOException {
+            this.task = task;
+            this.input = input;
+            this.comparator = comparator;
+            this.inputGroups = inputGroups;
+            this.inputRecords = inputRecords;
+            this.writer = writer;
+            this.committer = committer;
+            SerializationFactory serialization = new SerializationFactory(task.getConfiguration());
+            this.keyDeserializer = serialization.getDeserializer(keyClass);
+            this.valueDeserializer = serialization.getDeserializer(valueClass);
+            this.hasMore = input.next();
+        }
+
+        // ReduceContext
+
+        public boolean nextKey() throws IOException, InterruptedException {
+            // Skip values of the current key the reducer did not read
+            while (hasMore && nextKeyIsSame) {
+                nextKeyValue();
+            }
+            if (!hasMore) {
+                return false;
+            }
+            inputGroups.increment(1L);
+            return nextKeyValue();
+        }
+
+        public boolean nextKeyValue() throws IOException, InterruptedException {
+            if (!hasMore) {
+                key = null;
+                value = null;
+                return false;
+            }
+            firstValue = !nextKeyIsSame;
+
+            DataInputBuffer rawKey = input.getKey();
+            currentRawKey.reset();
+            currentRawKey.write(rawKey.getData(), rawKey.getPosition(), rawKey.getLength() - rawKey.getPosition());
+            keyDeserializer.open(rawKey);
+            key = keyDeserializer.deserialize(key);
+            DataInputBuffer rawValue = input.getValue();
+            valueDeserializer.open(rawValue);
+            value = valueDeserializer.deserialize(value);
+            inputRecords.increment(1L);
+
+            hasMore = input.next();
+            if (hasMore) {
+                DataInputBuffer nextKey = input.getKey();
+                nextKeyIsSame = comparator.compare(currentRawKey.getData(), 0, currentRawKey.getLength(),
+                        nextKey.getData(), nextKey.getPosition(), nextKey.getLength() - nextKey.getPosition()) == 0;
+            } else {
+                nextKeyIsSame = false;
+            }
+            return true;
+        }
+
+        public KEYIN getCurrentKey() {
+            return key;
+        }
+
+        public VALUEIN getCurrentValue() {
+            return value;
+        }
+
+        public Iterable<VALUEIN> getValues() {
+            return values;
+        }
+
+        public void write(KEYOUT key, VALUEOUT value) throws IOException, InterruptedException {
+            writer.write(key, value);
+        }
+
+        public OutputCommitter getOutputCommitter() {
+            return committer;
+        }
+
+        public TaskAttemptID getTaskAttemptID() {
+            return task.getTaskAttemptID();
+        }
+
+        public void setStatus(String status) {
+            task.setStatus(status);
+        }
+
+        public String getStatus() {
+            return task.getStatus();
+        }
+
+        public float getProgress() {
+            return task.getProgress();
+        }
+
+        public Counter getCounter(Enum<?> name) {
+            return task.getCounter(name);
+        }
+
+        public Counter getCounter(String group, String name) {
+            return task.getCounter(group, name);
+        }
+
+        public void progress() {
+            task.progress();
+        }
+
+        public Configuration getConfiguration() {
+            return task.getConfiguration();
+        }
+
+        public Credentials getCredentials() {
+            return task.getCredentials();
+        }
+
+        public JobID getJobID() {
+            return task.getJobID();
+        }
+
+        public int getNumReduceTasks() {
+            return task.getNumReduceTasks();
+        }
+
+        public Path getWorkingDirectory() throws IOException {
+            return task.getWorkingDirectory();
+        }
+
+        public Class<?> getOutputKeyClass() {
+            return task.getOutputKeyClass();
+        }
+
+        public Class<?> getOutputValueClass() {
+            return task.getOutputValueClass();
+        }
+
+        public Class<?> getMapOutputKeyClass() {
+            return task.getMapOutputKeyClass();
+        }
+
+        public Class<?> getMapOutputValueClass() {
+            return task.getMapOutputValueClass();
+        }
+
+        public String getJobName() {
+            return task.getJobName();
+        }
+
+        public Class<? extends InputFormat<?, ?>> getInputFormatClass() throws ClassNotFoundException {
+            return task.getInputFormatClass();
+        }
+
+        public Class<? extends Mapper<?, ?, ?, ?>> getMapperClass() throws ClassNotFoundException {
+            return task.getMapperClass();
+        }
+
+        public Class<? extends Reducer<?, ?, ?, ?>> getCombinerClass() throws ClassNotFoundException {
+            return task.getCombinerClass();
+        }
+
+        public Class<? extends Reducer<?, ?, ?, ?>> getReducerClass() throws ClassNotFoundException {
+            return task.getReducerClass();
+        }
+
+        public Class<? extends OutputFormat<?, ?>> getOutputFormatClass() throws ClassNotFoundException {
+            return task.getOutputFormatClass();
+        }
+
+        public Class<? extends Partitioner<?, ?>> getPartitionerClass() throws ClassNotFoundException {
+            return task.getPartitionerClass();
+        }
+
+        public RawComparator<?> getSortComparator() {
+            return task.getSortComparator();
+        }
+
+        public String getJar() {
+            return task.getJar();
+        }
+
+        public RawComparator<?> getGroupingComparator() {
+            return task.getGroupingComparator();
+        }
+
+        public boolean getJobSetupCleanupNeeded() {
+            return task.getJobSetupCleanupNeeded();
+        }
+
+        public boolean getTaskCleanupNeeded() {
+            return task.getTaskCleanupNeeded();
+        }
+
+        public boolean getProfileEnabled() {
+            return task.getProfileEnabled();
+        }
+
+        public String getProfileParams() {
+            return task.getProfileParams();
+        }
+
+        public Configuration.IntegerRanges getProfileTaskRange(boolean isMap) {
+            return task.getProfileTaskRange(isMap);
+        }
+
+        public String getUser() {
+            return task.getUser();
+        }
+
+        public boolean getSymlink() {
+            return task.getSymlink();
+        }
+
+        public Path[] getArchiveClassPaths() {
+            return task.getArchiveClassPaths();
+        }
+
+        public URI[] getCacheArchives() throws IOException {
+            return task.getCacheArchives();
+        }
+
+        public URI[] getCacheFiles() throws IOException {
+            return task.getCacheFiles();
+        }
+
+        public Path[] getLocalCacheArchives() throws IOException {
+            return task.getLocalCacheArchives();
+        }
+
+        public Path[] getLocalCacheFiles() throws IOException {
+            return task.getLocalCacheFiles();
+        }
+
+        public Path[] getFileClassPaths() {
+            return task.getFileClassPaths();
+        }
+
+        public String[] getArchiveTimestamps() {
+            return task.getArchiveTimestamps();
+        }
+
+        public String[] getFileTimestamps() {
+            return task.getFileTimestamps();
+        }
+
+        public int getMaxMapAttempts() {
+            return task.getMaxMapAttempts();
+        }
+
+        public int getMaxReduceAttempts() {
+            return task.getMaxReduceAttempts();
+        }
+
+        /**
+         * Values of the current key, can only be iterated once
+         */
+        private class ValueIterable implements Iterable<VALUEIN>, Iterator<VALUEIN> {
+
+            @Override
+            public Iterator<VALUEIN> iterator() {
+                return this;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return firstValue || nextKeyIsSame;
+            }
+
+            @Override
+            public VALUEIN next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("Iterate past last value");
+                }
+                if (firstValue) {
+                    firstValue = false;
+                    return value;
+                }
+                try {
+                    nextKeyValue();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                // nextKeyValue flags the first value of a new key only
+                firstValue = false;
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Cannot remove values");
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.aamend.hadoop.clustering.job;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.security.Credentials;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * TaskAttemptContext of a LocalEngine task. Job properties are read from the
+ * configured Job, counters and status go to the task StatusReporter.
+ * <p/>
+ * Contexts are implemented here rather than with the framework ones
+ * (TaskAttemptContextImpl, MapContextImpl, WrappedMapper...) as those are
+ * not part of the public MapReduce API, and are not shipped by every
+ * release (e.g. MR1 hadoop-core). Methods implement the JobContext and
+ * TaskAttemptContext interfaces as of Hadoop 2.2, without @Override so that
+ * the same sources compile against releases missing some of them. A release
+ * adding abstract methods to these interfaces requires them to be added
+ * here, and delegated by LocalMapper and LocalReducer contexts.
+ * <p/>
+ * Date: 17/10/26
+ */
+class LocalTaskContext implements TaskAttemptContext {
+
+    private final Job job;
+    private final TaskAttemptID id;
+    private final StatusReporter reporter;
+    private String status = "";
+
+    LocalTaskContext(Job job, TaskAttemptID id, StatusReporter reporter) {
+        this.job = job;
+        this.id = id;
+        this.reporter = reporter;
+    }
+
+    // TaskAttemptContext
+
+    public TaskAttemptID getTaskAttemptID() {
+        return id;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+        reporter.setStatus(status);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public float getProgress() {
+        // Progress is not tracked locally
+        return 0.0f;
+    }
+
+    public Counter getCounter(Enum<?> name) {
+        return reporter.getCounter(name);
+    }
+
+    public Counter getCounter(String group, String name) {
+        return reporter.getCounter(group, name);
+    }
+
+    public void progress() {
+        reporter.progress();
+    }
+
+    // JobContext
+
+    public Configuration getConfiguration() {
+        return job.getConfiguration();
+    }
+
+    public Credentials getCredentials() {
+        return job.getCredentials();
+    }
+
+    public JobID getJobID() {
+        return id.getJobID();
+    }
+
+    public int getNumReduceTasks() {
+        return job.getNumReduceTasks();
+    }
+
+    public Path getWorkingDirectory() throws IOException {
+        return job.getWorkingDirectory();
+    }
+
+    public Class<?> getOutputKeyClass() {
+        return job.getOutputKeyClass();
+    }
+
+    public Class<?> getOutputValueClass() {
+        return job.getOutputValueClass();
+    }
+
+    public Class<?> getMapOutputKeyClass() {
+        return job.getMapOutputKeyClass();
+    }
+
+    public Class<?> getMapOutputValueClass() {
+        return job.getMapOutputValueClass();
+    }
+
+    public String getJobName() {
+        return job.getJobName();
+    }
+
+    public Class<? extends InputFormat<?, ?>> getInputFormatClass() throws ClassNotFoundException {
+        return job.getInputFormatClass();
+    }
+
+    public Class<? extends Mapper<?, ?, ?, ?>> getMapperClass() throws ClassNotFoundException {
+        return job.getMapperClass();
+    }
+
+    public Class<? extends Reducer<?, ?, ?, ?>> getCombinerClass() throws ClassNotFoundException {
+        return job.getCombinerClass();
+    }
+
+    public Class<? extends Reducer<?, ?, ?, ?>> getReducerClass() throws ClassNotFoundException {
+        return job.getReducerClass();
+    }
+
+    public Class<? extends OutputFormat<?, ?>> getOutputFormatClass() throws ClassNotFoundException {
+        return job.getOutputFormatClass();
+    }
+
+    public Class<? extends Partitioner<?, ?>> getPartitionerClass() throws ClassNotFoundException {
+        return job.getPartitionerClass();
+    }
+
+    public RawComparator<?> getSortComparator() {
+        return job.getSortComparator();
+    }
+
+    public String getJar() {
+        return job.getJar();
+    }
+
+    public RawComparator<?> getGroupingComparator() {
+        return job.getGroupingComparator();
+    }
+
+    public boolean getJobSetupCleanupNeeded() {
+        return job.getJobSetupCleanupNeeded();
+    }
+
+    public boolean getTaskCleanupNeeded() {
+        return job.getTaskCleanupNeeded();
+    }
+
+    public boolean getProfileEnabled() {
+        return job.getProfileEnabled();
+    }
+
+    public String getProfileParams() {
+        return job.getProfileParams();
+    }
+
+    public Configuration.IntegerRanges getProfileTaskRange(boolean isMap) {
+        return job.getProfileTaskRange(isMap);
+    }
+
+    public String getUser() {
+        return job.getUser();
+    }
+
+    public boolean getSymlink() {
+        return job.getSymlink();
+    }
+
+    public Path[] getArchiveClassPaths() {
+        return job.getArchiveClassPaths();
+    }
+
+    public URI[] getCacheArchives() throws IOException {
+        return job.getCacheArchives();
+    }
+
+    public URI[] getCacheFiles() throws IOException {
+        return job.getCacheFiles();
+    }
+
+    public Path[] getLocalCacheArchives() throws IOException {
+        return job.getLocalCacheArchives();
+    }
+
+    public Path[] getLocalCacheFiles() throws IOException {
+        return job.getLocalCacheFiles();
+    }
+
+    public Path[] getFileClassPaths() {
+        return job.getFileClassPaths();
+    }
+
+    public String[] getArchiveTimestamps() {
+        return job.getArchiveTimestamps();
+    }
+
+    public String[] getFileTimestamps() {
+        return job.getFileTimestamps();
+    }
+
+    public int getMaxMapAttempts() {
+        return job.getMaxMapAttempts();
+    }
+
+    public int getMaxReduceAttempts() {
+        return job.getMaxReduceAttempts();
+    }
+}
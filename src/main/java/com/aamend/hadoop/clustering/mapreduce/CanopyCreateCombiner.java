@@ -0,0 +1,74 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Merge the points observed for a canopy on the map side. First point is
+ * kept as is since the reducer uses it as a template, and a uniform sample
+ * of at most COMBINER_SAMPLE other points is kept (reservoir sampling) as
+ * medoid candidates. Observations of the dropped points are added to the
+ * template so that the number of observations per canopy is unchanged.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyCreateCombiner extends
+        Reducer<CenterWritable, CanopyWritable, CenterWritable, CanopyWritable> {
+
+    private int sampleSize;
+    private Cluster[] sample;
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        sampleSize = context.getConfiguration().getInt(Canopy.COMBINER_SAMPLE, 1000);
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Combiner sample size must be greater or equals to 1");
+        }
+        sample = new Cluster[sampleSize];
+    }
+
+    @Override
+    protected void reduce(CenterWritable key, Iterable<CanopyWritable> values, Context context)
+            throws IOException, InterruptedException {
+
+        // Same key is always sampled the same way
+        Random random = new Random(key.hashCode());
+
+        Cluster template = null;
+        long dropped = 0L;
+        int seen = 0;
+        for (CanopyWritable value : values) {
+            Cluster cluster = value.get();
+            if (template == null) {
+                template = cluster;
+                continue;
+            }
+            if (seen < sampleSize) {
+                sample[seen] = cluster;
+            } else {
+                int i = random.nextInt(seen + 1);
+                if (i < sampleSize) {
+                    dropped += sample[i].getNum();
+                    sample[i] = cluster;
+                } else {
+                    dropped += cluster.getNum();
+                }
+            }
+            seen++;
+        }
+
+        template.observe(dropped);
+        context.write(key, new CanopyWritable(template));
+        for (int i = 0; i < Math.min(seen, sampleSize); i++) {
+            context.write(key, new CanopyWritable(sample[i]));
+            sample[i] = null;
+        }
+    }
+
+}
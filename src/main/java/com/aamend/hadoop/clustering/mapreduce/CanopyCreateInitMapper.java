@@ -2,80 +2,341 @@ package com.aamend.hadoop.clustering.mapreduce;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.cluster.StreamingMedoid;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
-import com.google.common.collect.Lists;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.index.CanopyList;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.ArrayPrimitiveWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 
 /**
+ * When SINGLE_PASS is set, points are not emitted. Each canopy rather keeps
+ * a bounded reservoir of its points (see StreamingMedoid) and its number of
+ * observations, and is emitted once refined at cleanup as a single summary
+ * record, centered on its approximate medoid.
+ * <p/>
+ * When MAPPER_AGGREGATE is set, points are not emitted as they are read
+ * either. Each canopy keeps a uniform sample of at most that many members
+ * (same as CanopyCreateCombiner) and the observations of the others, which
+ * are written as a template followed by its sample at cleanup, or whenever
+ * MAPPER_SPILL members are held in memory.
+ * <p/>
+ * When MAPPER_THREADS is greater than 1, input is split into that many
+ * partitions, each of them creating its own canopies within its own thread
+ * (as if it was a distinct map task), so that fewer, larger tasks can be
+ * used. Partitions are fed with batches of consecutive points.
+ * <p/>
+ * Points deduplicated beforehand (see DEDUP) are keyed by their number of
+ * duplicates, which is used as their number of observations and weight.
+ * <p/>
  * Author: antoine.amend@gmail.com
  * Date: 21/03/14
  */
 public class CanopyCreateInitMapper extends
-        Mapper<WritableComparable, ArrayPrimitiveWritable, Text, CanopyWritable> {
+        Mapper<WritableComparable, ArrayPrimitiveWritable, CenterWritable, CanopyWritable> {
 
     private float t1;
     private float t2;
-    private int nextCanopyId;
-    private DistanceMeasure measure;
-    private Collection<Cluster> canopies = Lists.newArrayList();
+    private int threads;
+    private boolean singlePass;
+    private int sample;
+    private int aggregate;
+    private long spill;
+    private Partition partition;
+    private Partition[] partitions;
+    private Instrumentation instrumentation;
 
-    private static final Text KEY = new Text();
     private static final Logger LOGGER =
             LoggerFactory.getLogger(CanopyCreateInitMapper.class);
 
+    /**
+     * Canopies created out of a subset of the input points
+     */
+    private class Partition {
+
+        private final DistanceMeasure measure;
+        private final CanopyList canopies;
+        private final CenterWritable key = new CenterWritable();
+        private final List<StreamingMedoid> medoids = new ArrayList<StreamingMedoid>();
+        private final List<Aggregate> aggregates = new ArrayList<Aggregate>();
+        private long held;
+        private int nextCanopyId;
+
+        private Partition(DistanceMeasure measure) {
+            this.measure = measure;
+            this.canopies = new CanopyList(measure, t1, t2);
+        }
+
+        private void create(Cluster canopy) {
+            StreamingMedoid medoid = new StreamingMedoid(measure, sample);
+            medoid.reset(canopy.getId());
+            medoid.observe(canopy.getCenter(), canopy.getWeight());
+            medoids.add(medoid);
+        }
+
+        private void refine(int canopy, int[] point, long num, long weight) {
+            // Canopies are created in the same order as their medoids
+            canopies.observe(canopy, num);
+            medoids.get(canopy).observe(point, weight);
+        }
+
+        private void aggregate(int canopy, Cluster member, Context context)
+                throws IOException, InterruptedException {
+            if (aggregates.get(canopy).add(member)) {
+                held++;
+            }
+            if (held >= spill) {
+                LOGGER.info("Spilling {} canopies holding {} members", aggregates.size(), held);
+                flush(context);
+            }
+        }
+
+        private void flush(Context context) throws IOException, InterruptedException {
+            for (Aggregate aggregate : aggregates) {
+                if (aggregate.isEmpty()) {
+                    continue;
+                }
+                int[] center = aggregate.template.getCenter();
+                write(this, center, aggregate.template, context);
+                for (Cluster member : aggregate.sample) {
+                    write(this, center, member, context);
+                }
+                aggregate.reset();
+            }
+            held = 0L;
+        }
+
+        private void summarize(Context context) throws IOException, InterruptedException {
+            for (int i = 0; i < medoids.size(); i++) {
+                int[] center = medoids.get(i).getMedoid();
+                key.set(center);
+                context.write(key, new CanopyWritable(new Canopy(canopies.getId(i), center, canopies.getNum(i))));
+            }
+            medoids.clear();
+        }
+    }
+
+    /**
+     * Template of a canopy and a uniform sample of its members
+     */
+    private class Aggregate {
+
+        private Cluster template;
+        private final List<Cluster> sample = new ArrayList<Cluster>();
+        private final Random random;
+        private int seen;
+
+        private Aggregate(Cluster canopy) {
+            this.template = new Canopy(canopy.getId(), canopy.getCenter(), canopy.getNum(),
+                    canopy.getWeight());
+            this.random = new Random(canopy.getId());
+        }
+
+        /**
+         * @return true if the sample has grown
+         */
+        private boolean add(Cluster member) {
+            boolean grown = false;
+            if (seen < aggregate) {
+                sample.add(member);
+                grown = true;
+            } else {
+                int i = random.nextInt(seen + 1);
+                if (i < aggregate) {
+                    template.observe(sample.get(i).getNum());
+                    sample.set(i, member);
+                } else {
+                    template.observe(member.getNum());
+                }
+            }
+            seen++;
+            return grown;
+        }
+
+        private boolean isEmpty() {
+            return seen == 0 && template.getNum() == 0L;
+        }
+
+        private void reset() {
+            // Spilled observations must not be accounted for twice
+            template = new Canopy(template.getId(), template.getCenter(), 0L,
+                    template.getWeight());
+            sample.clear();
+            seen = 0;
+        }
+    }
+
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
 
         // Retrieve params fom configuration
         Configuration conf = context.getConfiguration();
-        measure = Canopy.configureMeasure(conf);
         t1 = conf.getFloat(Canopy.CLUSTER_T1, 1.0f);
         t2 = conf.getFloat(Canopy.CLUSTER_T2, 0.8f);
+        threads = conf.getInt(Canopy.MAPPER_THREADS, 1);
+        singlePass = conf.getBoolean(Canopy.SINGLE_PASS, false);
+        sample = conf.getInt(Canopy.SINGLE_PASS_SAMPLE, 50);
+        aggregate = conf.getInt(Canopy.MAPPER_AGGREGATE, 0);
+        spill = conf.getLong(Canopy.MAPPER_SPILL, 100000L);
+        instrumentation = new Instrumentation(conf);
+        partition = new Partition(instrumentation.configureMeasure(conf));
+        partitions = new Partition[]{partition};
     }
 
     @Override
     protected void map(WritableComparable key, ArrayPrimitiveWritable value, Context context)
             throws IOException, InterruptedException {
+        map(partition, (int[]) value.get(), weight(key), context);
+    }
+
+    private static long weight(WritableComparable key) {
+        return key instanceof DuplicatesWritable ? ((DuplicatesWritable) key).getCount() : 1L;
+    }
+
+    private void map(Partition partition, int[] value, long weight, Context context)
+            throws IOException, InterruptedException {
 
-        int[] point = (int[]) value.get();
+        DistanceMeasure measure = partition.measure;
+        CanopyList canopies = partition.canopies;
+        int[] point = DistanceMeasures.canonicalize(measure, value);
         boolean stronglyBound = false;
-        for (Cluster canopy : canopies) {
-            double dist = measure.distance(canopy.getCenter(), point);
+        int candidates = canopies.candidates(point);
+        for (int i = 0; i < candidates; i++) {
+            int canopy = canopies.getCandidate(i);
+            // Only distances below T1 matter, give up as soon as exceeded
+            double dist = canopies.distanceWithin(canopy, point, t1);
             if (dist < t1) {
-                KEY.set(Arrays.toString(canopy.getCenter()));
-                Cluster newCluster;
+                long num;
                 if (dist < t2) {
-                    newCluster = new Canopy(canopy.getId(), point, 1L);
-                    LOGGER.debug("Adding (T2) {} to Cluster center {}", Arrays.toString((int[]) value.get()),
-                            Arrays.toString(canopy.getCenter()));
+                    num = weight;
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Adding (T2) {} to Cluster center {}", Arrays.toString(value),
+                                Arrays.toString(canopies.getCenter(canopy)));
+                    }
                 } else {
-                    newCluster = new Canopy(canopy.getId(), point, 0L);
-                    LOGGER.debug("Adding (T1) {} to Cluster center {}", Arrays.toString((int[]) value.get()),
-                            Arrays.toString(canopy.getCenter()));
+                    num = 0L;
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Adding (T1) {} to Cluster center {}", Arrays.toString(value),
+                                Arrays.toString(canopies.getCenter(canopy)));
+                    }
+                }
+                if (singlePass) {
+                    partition.refine(canopy, point, num, weight);
+                } else if (aggregate > 0) {
+                    partition.aggregate(canopy, new Canopy(canopies.getId(canopy), point, num, weight), context);
+                } else {
+                    write(partition, canopy, new Canopy(canopies.getId(canopy), point, num, weight), context);
                 }
-                context.write(KEY, new CanopyWritable(newCluster));
             }
             stronglyBound = stronglyBound || dist < t2;
         }
         if (!stronglyBound) {
-            nextCanopyId++;
-            Cluster canopy = new Canopy(nextCanopyId, point, 1L);
-            LOGGER.debug("Creating a new Cluster {}", canopy.asFormattedString());
-            canopies.add(canopy);
-            KEY.set(Arrays.toString(canopy.getCenter()));
-            context.write(KEY, new CanopyWritable(canopy));
+            partition.nextCanopyId++;
+            Cluster canopy = new Canopy(partition.nextCanopyId, point, weight, weight);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Creating a new Cluster {}", canopy.asFormattedString());
+            }
+            canopies.add(canopy.getId(), point, weight);
+            if (singlePass) {
+                partition.create(canopy);
+            } else if (aggregate > 0) {
+                partition.aggregates.add(new Aggregate(canopy));
+            } else {
+                write(partition, canopy.getCenter(), canopy, context);
+            }
+        }
+
+    }
+
+    private void write(Partition partition, int canopy, Cluster cluster, Context context)
+            throws IOException, InterruptedException {
+        // Canopy center is serialized straight from the partition arena
+        synchronized (context) {
+            partition.canopies.getCenter(canopy, partition.key);
+            context.write(partition.key, new CanopyWritable(cluster));
+        }
+    }
+
+    private void write(Partition partition, int[] center, Cluster cluster, Context context)
+            throws IOException, InterruptedException {
+        // Partitions share the same output
+        synchronized (context) {
+            partition.key.set(center);
+            context.write(partition.key, new CanopyWritable(cluster));
+        }
+    }
+
+    @Override
+    public void run(Context context) throws IOException, InterruptedException {
+        setup(context);
+        if (threads <= 1) {
+            while (context.nextKeyValue()) {
+                map(context.getCurrentKey(), context.getCurrentValue(), context);
+            }
+        } else {
+            runPartitioned(context);
+        }
+        cleanup(context);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        for (Partition p : partitions) {
+            if (singlePass) {
+                p.summarize(context);
+            } else if (aggregate > 0) {
+                p.flush(context);
+            }
         }
+        instrumentation.report(context);
+    }
+
+    private void runPartitioned(final Context context) throws IOException, InterruptedException {
 
+        // Measures may hold state, one per partition
+        partitions = new Partition[threads];
+        partitions[0] = partition;
+        for (int i = 1; i < threads; i++) {
+            partitions[i] = new Partition(instrumentation.configureMeasure(context.getConfiguration()));
+        }
+
+        PartitionedRunner<Long, int[]> runner = new PartitionedRunner<Long, int[]>(
+                threads, new PartitionedRunner.Worker<Long, int[]>() {
+            @Override
+            public void process(int partition, Long weight, int[] point)
+                    throws IOException, InterruptedException {
+                map(partitions[partition], point, weight, context);
+            }
+        });
+
+        // Only the weight of reused input keys is kept, points need no copy
+        // as ArrayPrimitiveWritable reads each of them into a new array
+        boolean done = false;
+        try {
+            while (context.nextKeyValue()) {
+                int[] point = (int[]) context.getCurrentValue().get();
+                runner.submit(weight(context.getCurrentKey()), point);
+            }
+            runner.finish();
+            done = true;
+        } finally {
+            if (!done) {
+                runner.abort();
+            }
+        }
     }
 }
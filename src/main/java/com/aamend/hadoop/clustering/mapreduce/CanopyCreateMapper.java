@@ -2,9 +2,12 @@ package com.aamend.hadoop.clustering.mapreduce;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
-import com.google.common.collect.Lists;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.index.CanopyList;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -13,21 +16,21 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collection;
 
 /**
  * Author: antoine.amend@gmail.com
  * Date: 21/03/14
  */
-public class CanopyCreateMapper extends Mapper<Text, CanopyWritable, Text, CanopyWritable> {
+public class CanopyCreateMapper extends Mapper<Text, CanopyWritable, CenterWritable, CanopyWritable> {
 
     private float t1;
     private float t2;
     private int nextCanopyId;
     private DistanceMeasure measure;
-    private Collection<Cluster> canopies = Lists.newArrayList();
+    private CanopyList canopies;
+    private Instrumentation instrumentation;
 
-    private static final Text KEY = new Text();
+    private final CenterWritable outputKey = new CenterWritable();
     private static final Logger LOGGER = LoggerFactory.getLogger(CanopyCreateMapper.class);
 
     @Override
@@ -36,45 +39,64 @@ public class CanopyCreateMapper extends Mapper<Text, CanopyWritable, Text, Canop
 
         // Retrieve params fom configuration
         Configuration conf = context.getConfiguration();
-        measure = Canopy.configureMeasure(conf);
+        instrumentation = new Instrumentation(conf);
+        measure = instrumentation.configureMeasure(conf);
         t1 = conf.getFloat(Canopy.CLUSTER_T1, 1.0f);
         t2 = conf.getFloat(Canopy.CLUSTER_T2, 0.8f);
+        canopies = new CanopyList(measure, t1, t2);
     }
 
     @Override
     protected void map(Text key, CanopyWritable value, Context context) throws IOException, InterruptedException {
 
         Cluster cluster = value.get();
-        int[] point = cluster.getCenter();
+        int[] point = DistanceMeasures.canonicalize(measure, cluster.getCenter());
+        if (point != cluster.getCenter()) {
+            value.set(new Canopy(cluster.getId(), point, cluster.getNum()));
+        }
         boolean stronglyBound = false;
-        for (Cluster canopy : canopies) {
-            double dist = measure.distance(canopy.getCenter(), point);
+        int candidates = canopies.candidates(point);
+        for (int i = 0; i < candidates; i++) {
+            int canopy = canopies.getCandidate(i);
+            // Only distances below T1 matter, give up as soon as exceeded
+            double dist = canopies.distanceWithin(canopy, point, t1);
             if (dist < t1) {
-                KEY.set(Arrays.toString(canopy.getCenter()));
+                canopies.getCenter(canopy, outputKey);
                 Cluster newCluster;
                 if (dist < t2) {
-                    newCluster = new Canopy(canopy.getId(), point, value.get().getNum());
-                    LOGGER.debug("Adding (T2) {} to Cluster {}", Arrays.toString(point),
-                            Arrays.toString(canopy.getCenter()));
+                    newCluster = new Canopy(canopies.getId(canopy), point, value.get().getNum());
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Adding (T2) {} to Cluster {}", Arrays.toString(point),
+                                Arrays.toString(outputKey.get()));
+                    }
                 } else {
-                    newCluster = new Canopy(canopy.getId(), point, 0L);
-                    LOGGER.debug("Adding (T1) {} to Cluster {}", Arrays.toString(point),
-                            Arrays.toString(canopy.getCenter()));
+                    newCluster = new Canopy(canopies.getId(canopy), point, 0L);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Adding (T1) {} to Cluster {}", Arrays.toString(point),
+                                Arrays.toString(outputKey.get()));
+                    }
                 }
 
-                context.write(KEY, new CanopyWritable(newCluster));
+                context.write(outputKey, new CanopyWritable(newCluster));
             }
 
             stronglyBound = stronglyBound || dist < t2;
         }
         if (!stronglyBound) {
             nextCanopyId++;
-            Cluster canopy = new Canopy(nextCanopyId, point, value.get().getNum());
-            canopies.add(canopy);
-            LOGGER.debug("Creating a new Cluster {}", canopy.asFormattedString());
-            KEY.set(Arrays.toString(canopy.getCenter()));
-            context.write(KEY, value);
+            long num = value.get().getNum();
+            canopies.add(nextCanopyId, point, num);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Creating a new Cluster {}", new Canopy(nextCanopyId, point, num).asFormattedString());
+            }
+            outputKey.set(point);
+            context.write(outputKey, value);
         }
 
     }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        instrumentation.report(context);
+    }
 }
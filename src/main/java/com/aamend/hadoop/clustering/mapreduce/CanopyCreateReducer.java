@@ -2,7 +2,11 @@ package com.aamend.hadoop.clustering.mapreduce;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.cluster.MedoidSelector;
+import com.aamend.hadoop.clustering.cluster.StreamingMedoid;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
@@ -19,7 +23,7 @@ import java.util.List;
  * Author: antoine.amend@gmail.com
  * Date: 21/03/14
  */
-public class CanopyCreateReducer extends Reducer<Text, CanopyWritable, Text, CanopyWritable> {
+public class CanopyCreateReducer extends Reducer<CenterWritable, CanopyWritable, Text, CanopyWritable> {
 
     private static final Text KEY = new Text("canopies");
     private static final Logger LOGGER = LoggerFactory.getLogger(CanopyCreateReducer.class);
@@ -29,37 +33,65 @@ public class CanopyCreateReducer extends Reducer<Text, CanopyWritable, Text, Can
 
     private boolean lastIteration;
     private long minObservations;
-    private DistanceMeasure measure;
+    private MedoidSelector selector;
+    private Instrumentation instrumentation;
+    private StreamingMedoid streaming;
     private int nextCanopyId;
+    private long[] weights = new long[16];
 
     @Override
     protected void setup(Context context) throws IOException {
         Configuration conf = context.getConfiguration();
         minObservations = conf.getLong(Canopy.MIN_OBSERVATIONS, 1);
         lastIteration = conf.getBoolean(Canopy.LAST_ITERATION, false);
-        measure = Canopy.configureMeasure(conf);
+        instrumentation = new Instrumentation(conf);
+        DistanceMeasure measure = instrumentation.configureMeasure(conf);
+        selector = new MedoidSelector(conf, measure, instrumentation);
+
+        // Bounded memory, points are not all kept
+        int sample = conf.getInt(Canopy.REDUCER_SAMPLE, 0);
+        if (sample > 0) {
+            streaming = new StreamingMedoid(measure, sample);
+        }
     }
 
     @Override
-    protected void reduce(Text key, Iterable<CanopyWritable> values, Context context)
+    protected void reduce(CenterWritable key, Iterable<CanopyWritable> values, Context context)
             throws IOException, InterruptedException {
 
         // Try to find a center that could minimize all data points
         List<int[]> points = new ArrayList<int[]>();
+        if (streaming != null) {
+            streaming.reset(key.hashCode());
+        }
 
+        long start = instrumentation.start();
         long obs = 0L;
+        boolean weighted = false;
         Cluster clusterTemplate = null;
         for (CanopyWritable value : values) {
             if (clusterTemplate == null) {
                 clusterTemplate = value.get();
             } else {
-                obs += value.get().getNum();
-                points.add(value.get().getCenter());
+                Cluster cluster = value.get();
+                obs += cluster.getNum();
+                // Deduplicated points weigh their number of duplicates
+                weighted = weighted || cluster.getWeight() != 1L;
+                if (streaming == null) {
+                    if (points.size() == weights.length) {
+                        weights = Arrays.copyOf(weights, 2 * weights.length);
+                    }
+                    weights[points.size()] = cluster.getWeight();
+                    points.add(cluster.getCenter());
+                } else {
+                    streaming.observe(cluster.getCenter(), cluster.getWeight());
+                }
             }
         }
 
         // Increment number of observations for this cluster
         clusterTemplate.observe(obs);
+        instrumentation.canopySize(streaming == null ? points.size() : streaming.getSeen());
 
         if (lastIteration) {
             if (clusterTemplate.getNum() < minObservations) {
@@ -68,15 +100,31 @@ public class CanopyCreateReducer extends Reducer<Text, CanopyWritable, Text, Can
             }
         }
 
-        LOGGER.info("Minimizing distance across {} data points in cluster center {}",
-                points.size(), Arrays.toString(clusterTemplate.getCenter()));
+        int[] center;
+        if (streaming == null) {
+            LOGGER.info("Minimizing distance across {} data points in cluster center {}",
+                    points.size(), Arrays.toString(clusterTemplate.getCenter()));
+            start = instrumentation.start();
+            clusterTemplate.computeCenter(points, weighted ? weights : null, selector);
+            center = clusterTemplate.getCenter();
+        } else {
+            LOGGER.info("Minimized distance across {} streamed data points in cluster center {}",
+                    streaming.getSeen(), Arrays.toString(clusterTemplate.getCenter()));
+            center = streaming.getSeen() > 1 ? streaming.getMedoid() : clusterTemplate.getCenter();
+        }
+        instrumentation.centerComputed(start);
 
-        clusterTemplate.computeCenter(points, measure);
         nextCanopyId++;
-        Cluster newCluster = new Canopy(nextCanopyId, clusterTemplate.getCenter(), clusterTemplate.getNum());
+        Cluster newCluster = new Canopy(nextCanopyId, center, clusterTemplate.getNum());
         context.getCounter(COUNTER, COUNTER_CANOPY).increment(1L);
         context.write(KEY, new CanopyWritable(newCluster));
 
     }
 
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        selector.close();
+        instrumentation.report(context);
+    }
+
 }
\ No newline at end of file
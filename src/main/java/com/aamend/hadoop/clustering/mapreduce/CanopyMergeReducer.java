@@ -0,0 +1,144 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.cluster.MedoidSelector;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.index.CanopyList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merge canopy summaries emitted by all mappers in SINGLE_PASS mode (see
+ * CanopyCreateInitMapper). Summaries are collected from all keys, then
+ * clustered at cleanup the same way mappers cluster points, largest
+ * summaries first. A summary within T2 adds its observations to the merged
+ * canopy, within T1 only its center (same as points). Merged canopy centers
+ * are then recomputed as the medoid of their summaries' centers, each center
+ * weighing the observations of its summary (so that duplicates counted by
+ * DEDUP are accounted for), and canopies with less than MIN_OBSERVATIONS are
+ * rejected. Must be used with a single
+ * reducer.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyMergeReducer extends Reducer<CenterWritable, CanopyWritable, Text, CanopyWritable> {
+
+    private static final Text KEY = new Text("canopies");
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanopyMergeReducer.class);
+
+    private float t1;
+    private float t2;
+    private long minObservations;
+    private DistanceMeasure measure;
+    private MedoidSelector selector;
+    private Instrumentation instrumentation;
+    private final List<Cluster> summaries = new ArrayList<Cluster>();
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        t1 = conf.getFloat(Canopy.CLUSTER_T1, 1.0f);
+        t2 = conf.getFloat(Canopy.CLUSTER_T2, 0.8f);
+        minObservations = conf.getLong(Canopy.MIN_OBSERVATIONS, 1);
+        instrumentation = new Instrumentation(conf);
+        measure = instrumentation.configureMeasure(conf);
+        selector = new MedoidSelector(conf, measure, instrumentation);
+    }
+
+    @Override
+    protected void reduce(CenterWritable key, Iterable<CanopyWritable> values, Context context) {
+        for (CanopyWritable value : values) {
+            summaries.add(value.get());
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+
+        LOGGER.info("Merging {} canopy summaries", summaries.size());
+
+        // Largest canopies are the most likely centers
+        Collections.sort(summaries, new Comparator<Cluster>() {
+            @Override
+            public int compare(Cluster c1, Cluster c2) {
+                return c1.getNum() > c2.getNum() ? -1 : (c1.getNum() < c2.getNum() ? 1 : 0);
+            }
+        });
+
+        CanopyList canopies = new CanopyList(measure, t1, t2);
+        List<List<int[]>> members = new ArrayList<List<int[]>>();
+        List<long[]> weights = new ArrayList<long[]>();
+        for (Cluster summary : summaries) {
+            int[] point = DistanceMeasures.canonicalize(measure, summary.getCenter());
+            long weight = Math.max(summary.getNum(), 1L);
+            boolean stronglyBound = false;
+            int candidates = canopies.candidates(point);
+            for (int i = 0; i < candidates; i++) {
+                int canopy = canopies.getCandidate(i);
+                double dist = canopies.distanceWithin(canopy, point, t1);
+                if (dist < t1) {
+                    addMember(members.get(canopy), weights, canopy, point, weight);
+                    if (dist < t2) {
+                        canopies.observe(canopy, summary.getNum());
+                    }
+                }
+                stronglyBound = stronglyBound || dist < t2;
+            }
+            if (!stronglyBound) {
+                int canopy = canopies.add(canopies.size() + 1, point, summary.getNum());
+                members.add(new ArrayList<int[]>());
+                weights.add(new long[4]);
+                addMember(members.get(canopy), weights, canopy, point, weight);
+            }
+        }
+        summaries.clear();
+
+        int nextCanopyId = 0;
+        for (int c = 0; c < canopies.size(); c++) {
+            if (canopies.getNum(c) < minObservations) {
+                context.getCounter(CanopyCreateReducer.COUNTER,
+                        CanopyCreateReducer.COUNTER_REJECTED_CANOPY).increment(1L);
+                continue;
+            }
+            // First member is the point the canopy was created from
+            List<int[]> points = members.get(c);
+            Cluster canopy = new Canopy(canopies.getId(c), points.get(0), canopies.getNum(c));
+            instrumentation.canopySize(points.size());
+            long start = instrumentation.start();
+            canopy.computeCenter(points, weights.get(c), selector);
+            instrumentation.centerComputed(start);
+            nextCanopyId++;
+            Cluster newCluster = new Canopy(nextCanopyId, canopy.getCenter(), canopy.getNum());
+            context.getCounter(CanopyCreateReducer.COUNTER, CanopyCreateReducer.COUNTER_CANOPY).increment(1L);
+            context.write(KEY, new CanopyWritable(newCluster));
+        }
+
+        selector.close();
+        instrumentation.report(context);
+    }
+
+    private static void addMember(List<int[]> points, List<long[]> weights, int canopy, int[] point, long weight) {
+        long[] pointWeights = weights.get(canopy);
+        if (points.size() == pointWeights.length) {
+            pointWeights = Arrays.copyOf(pointWeights, 2 * pointWeights.length);
+            weights.set(canopy, pointWeights);
+        }
+        pointWeights[points.size()] = weight;
+        points.add(point);
+    }
+}
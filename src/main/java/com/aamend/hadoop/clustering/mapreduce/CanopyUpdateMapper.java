@@ -0,0 +1,123 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.index.CanopyList;
+import com.aamend.hadoop.clustering.index.ClusterIndex;
+import com.aamend.hadoop.clustering.index.ClusterIndexes;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Assign new points to existing canopies (seeds, loaded from distributed
+ * cache the same way as ClusterDataMapper) in incremental mode. A point
+ * within T1 of its nearest seed is emitted under that seed's center, and
+ * accounted as an observation if within T2. Points not within T2 of any seed
+ * are clustered into new canopies the same way as CanopyCreateMapper. Seeds
+ * are only emitted when touched, see CanopyUpdateReducer.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyUpdateMapper extends
+        Mapper<WritableComparable, ArrayPrimitiveWritable, CenterWritable, CanopyWritable> {
+
+    private float t1;
+    private float t2;
+    private boolean recenter;
+    private int nextCanopyId;
+    private DistanceMeasure measure;
+    private ClusterIndex seeds;
+    private int[] seedBuffer = new int[0];
+    private CanopyList canopies;
+    private Instrumentation instrumentation;
+
+    private final CenterWritable outputKey = new CenterWritable();
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanopyUpdateMapper.class);
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+
+        // Retrieve params fom configuration
+        Configuration conf = context.getConfiguration();
+        instrumentation = new Instrumentation(conf);
+        measure = instrumentation.configureMeasure(conf);
+        t1 = conf.getFloat(Canopy.CLUSTER_T1, 1.0f);
+        t2 = conf.getFloat(Canopy.CLUSTER_T2, 0.8f);
+        recenter = conf.getBoolean(Canopy.INCREMENTAL_RECENTER, false);
+        canopies = new CanopyList(measure, t1, t2);
+
+        // Index seeds for nearest canopy lookups
+        seeds = ClusterIndexes.configureIndex(conf, ClusterDataMapper.loadCenters(conf, measure), measure);
+        LOGGER.info("Loaded {} seed canopies into {}", seeds.size(), seeds.getClass().getSimpleName());
+    }
+
+    @Override
+    protected void map(WritableComparable key, ArrayPrimitiveWritable value, Context context)
+            throws IOException, InterruptedException {
+
+        int[] point = DistanceMeasures.canonicalize(measure, (int[]) value.get());
+        long weight = key instanceof DuplicatesWritable ? ((DuplicatesWritable) key).getCount() : 1L;
+
+        boolean stronglyBound = false;
+        int seed = seeds.nearest(point, measure, t1);
+        if (seed >= 0) {
+            // Seed center is read in place, no Cluster is materialized
+            ClusterCenters centers = seeds.getCenters();
+            int length = centers.getCenterLength(seed);
+            if (seedBuffer.length < length) {
+                seedBuffer = new int[length];
+            }
+            int[] center = centers.getCenter(seed, seedBuffer);
+            stronglyBound = DistanceMeasures.distanceWithin(measure, center, 0, length,
+                    point, 0, point.length, t2) < t2;
+            // Points within T1 only do not change seeds unless recentered
+            if (stronglyBound || recenter) {
+                outputKey.set(center, 0, length);
+                Cluster newCluster = new Canopy(centers.getId(seed), point, stronglyBound ? weight : 0L, weight);
+                context.write(outputKey, new CanopyWritable(newCluster));
+            }
+        }
+        if (stronglyBound) {
+            return;
+        }
+
+        int candidates = canopies.candidates(point);
+        for (int i = 0; i < candidates; i++) {
+            int canopy = canopies.getCandidate(i);
+            double dist = canopies.distanceWithin(canopy, point, t1);
+            if (dist < t1) {
+                canopies.getCenter(canopy, outputKey);
+                long num = dist < t2 ? weight : 0L;
+                context.write(outputKey, new CanopyWritable(new Canopy(canopies.getId(canopy), point, num, weight)));
+            }
+            stronglyBound = stronglyBound || dist < t2;
+        }
+        if (!stronglyBound) {
+            nextCanopyId++;
+            canopies.add(nextCanopyId, point, weight);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Creating a new Cluster {}", new Canopy(nextCanopyId, point, weight).asFormattedString());
+            }
+            outputKey.set(point);
+            context.write(outputKey, new CanopyWritable(new Canopy(nextCanopyId, point, weight, weight)));
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        instrumentation.report(context);
+    }
+}
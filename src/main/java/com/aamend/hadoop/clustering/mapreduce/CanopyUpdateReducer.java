@@ -0,0 +1,228 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.cluster.MedoidSelector;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Update seed canopies with the points assigned by CanopyUpdateMapper, and
+ * create new canopies out of the others. Seeds keep their id, and gain the
+ * observations of their new points. When INCREMENTAL_RECENTER is set, their
+ * center is recomputed as the medoid of their new points and of their
+ * previous center, weighing their previous observations.
+ * <p/>
+ * Each reducer owns the seeds whose center is partitioned to it (job must
+ * use the default HashPartitioner): seeds touched by no new point are
+ * written unchanged at cleanup. Seeds sharing a same center are all kept,
+ * their points being told apart by the seed id they carry. New canopies
+ * are numbered after the largest seed id, reducers interleaving their ids,
+ * and rejected if they have less than MIN_OBSERVATIONS.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class CanopyUpdateReducer extends Reducer<CenterWritable, CanopyWritable, Text, CanopyWritable> {
+
+    private static final Text KEY = new Text("canopies");
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanopyUpdateReducer.class);
+    public static final String COUNTER_UPDATED_CANOPY = "canopies.updated";
+    public static final String COUNTER_NEW_CANOPY = "canopies.new";
+
+    private boolean recenter;
+    private long minObservations;
+    private MedoidSelector selector;
+    private Instrumentation instrumentation;
+    private final Map<CenterWritable, List<Cluster>> seeds = new LinkedHashMap<CenterWritable, List<Cluster>>();
+    private int nextCanopyId;
+    private int idIncrement;
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        minObservations = conf.getLong(Canopy.MIN_OBSERVATIONS, 1);
+        recenter = conf.getBoolean(Canopy.INCREMENTAL_RECENTER, false);
+        instrumentation = new Instrumentation(conf);
+        DistanceMeasure measure = instrumentation.configureMeasure(conf);
+        selector = new MedoidSelector(conf, measure, instrumentation);
+
+        // Keep the seeds partitioned to this reducer only
+        int partition = context.getTaskAttemptID().getTaskID().getId();
+        int reducers = context.getNumReduceTasks();
+        HashPartitioner<CenterWritable, CanopyWritable> partitioner =
+                new HashPartitioner<CenterWritable, CanopyWritable>();
+        int maxId = 0;
+        int owned = 0;
+        ClusterCenters centers = ClusterDataMapper.loadCenters(conf, measure);
+        for (int i = 0; i < centers.size(); i++) {
+            Cluster seed = centers.getCluster(i);
+            maxId = Math.max(maxId, seed.getId());
+            CenterWritable key = new CenterWritable(seed.getCenter());
+            if (partitioner.getPartition(key, null, reducers) == partition) {
+                // Distinct seeds may share a same center
+                List<Cluster> sameCenter = seeds.get(key);
+                if (sameCenter == null) {
+                    sameCenter = new ArrayList<Cluster>(1);
+                    seeds.put(key, sameCenter);
+                }
+                sameCenter.add(seed);
+                owned++;
+            }
+        }
+        nextCanopyId = maxId + partition + 1;
+        idIncrement = reducers;
+        LOGGER.info("Owning {} seed canopies, new canopies numbered from {}", owned, nextCanopyId);
+    }
+
+    @Override
+    protected void reduce(CenterWritable key, Iterable<CanopyWritable> values, Context context)
+            throws IOException, InterruptedException {
+
+        List<Cluster> owned = seeds.remove(key);
+        if (owned == null) {
+            Members members = new Members(null);
+            for (CanopyWritable value : values) {
+                members.add(value.get());
+            }
+            write(members, context);
+            return;
+        }
+
+        // Seeds sharing a same center are told apart by the id of their points
+        List<Members> members = new ArrayList<Members>(owned.size());
+        for (Cluster seed : owned) {
+            members.add(new Members(seed));
+        }
+        for (CanopyWritable value : values) {
+            Cluster cluster = value.get();
+            for (Members seedMembers : members) {
+                if (seedMembers.seed.getId() == cluster.getId()) {
+                    seedMembers.add(cluster);
+                    break;
+                }
+            }
+        }
+        for (Members seedMembers : members) {
+            write(seedMembers, context);
+        }
+    }
+
+    private void write(Members members, Context context) throws IOException, InterruptedException {
+
+        Cluster seed = members.seed;
+        if (seed != null && members.received == 0) {
+            writeUnchanged(seed, context);
+            return;
+        }
+
+        List<int[]> points = members.points;
+        instrumentation.canopySize(points.size());
+        if (seed == null && members.obs < minObservations) {
+            context.getCounter(CanopyCreateReducer.COUNTER, CanopyCreateReducer.COUNTER_REJECTED_CANOPY)
+                    .increment(1L);
+            return;
+        }
+
+        Cluster canopy;
+        if (seed == null) {
+            canopy = new Canopy(nextCanopyId, points.get(0), members.obs);
+            nextCanopyId += idIncrement;
+            context.getCounter(CanopyCreateReducer.COUNTER, COUNTER_NEW_CANOPY).increment(1L);
+        } else {
+            canopy = new Canopy(seed.getId(), seed.getCenter(), members.obs);
+            context.getCounter(CanopyCreateReducer.COUNTER, COUNTER_UPDATED_CANOPY).increment(1L);
+        }
+
+        LOGGER.info("Minimizing distance across {} data points in cluster center {}",
+                points.size(), Arrays.toString(canopy.getCenter()));
+        long start = instrumentation.start();
+        canopy.computeCenter(points, members.weighted ? members.weights : null, selector);
+        instrumentation.centerComputed(start);
+
+        context.getCounter(CanopyCreateReducer.COUNTER, CanopyCreateReducer.COUNTER_CANOPY).increment(1L);
+        context.write(KEY, new CanopyWritable(canopy));
+    }
+
+    private void writeUnchanged(Cluster seed, Context context) throws IOException, InterruptedException {
+        context.getCounter(CanopyCreateReducer.COUNTER, CanopyCreateReducer.COUNTER_CANOPY).increment(1L);
+        context.write(KEY, new CanopyWritable(new Canopy(seed.getId(), seed.getCenter(), seed.getNum())));
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+
+        // Seeds no new point was assigned to
+        int unchanged = 0;
+        for (List<Cluster> owned : seeds.values()) {
+            for (Cluster seed : owned) {
+                writeUnchanged(seed, context);
+                unchanged++;
+            }
+        }
+        LOGGER.info("{} seed canopies left unchanged", unchanged);
+        seeds.clear();
+
+        selector.close();
+        instrumentation.report(context);
+    }
+
+
+    /**
+     * Points of a seed (or of a new canopy if seed is null), weighted by their
+     * number of duplicates
+     */
+    private class Members {
+
+        private final Cluster seed;
+        private final List<int[]> points = new ArrayList<int[]>();
+        private long[] weights = new long[16];
+        private boolean weighted;
+        private long obs;
+        private int received;
+
+        private Members(Cluster seed) {
+            this.seed = seed;
+            if (seed != null) {
+                obs = seed.getNum();
+                if (recenter) {
+                    // Previous center stands for all previous observations
+                    addPoint(seed.getCenter(), Math.max(seed.getNum(), 1L));
+                    weighted = true;
+                }
+            }
+        }
+
+        private void add(Cluster cluster) {
+            received++;
+            obs += cluster.getNum();
+            if (seed == null || recenter) {
+                weighted = weighted || cluster.getWeight() != 1L;
+                addPoint(cluster.getCenter(), cluster.getWeight());
+            }
+        }
+
+        private void addPoint(int[] point, long weight) {
+            if (points.size() == weights.length) {
+                weights = Arrays.copyOf(weights, 2 * weights.length);
+            }
+            weights[points.size()] = weight;
+            points.add(point);
+        }
+    }
+}
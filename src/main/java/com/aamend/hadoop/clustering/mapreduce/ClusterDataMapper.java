@@ -2,55 +2,134 @@ package com.aamend.hadoop.clustering.mapreduce;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterStore;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.ClusterCenterList;
+import com.aamend.hadoop.clustering.cluster.ClusterCenters;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.distance.CanonicalDistanceMeasure;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasures;
+import com.aamend.hadoop.clustering.index.ClusterIndex;
+import com.aamend.hadoop.clustering.index.ClusterIndexes;
 import com.google.common.collect.Lists;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
+ * When MAPPER_THREADS is greater than 1, points are read by the task thread
+ * and dispatched to that many threads sharing the same clusters index, each
+ * of them using its own DistanceMeasure. Input keys are copied into
+ * instances recycled once written, and each thread buffers its assignments
+ * so that the task output is locked once per batch rather than per point.
+ * <p/>
+ * Points deduplicated beforehand (see DEDUP) are looked up once, and their
+ * cluster is written for each of their original keys.
+ * <p/>
+ * In a map-only job, when OUTPUT_BUCKETS is set, points are written to that
+ * many sub-directories of the output (see MultipleOutputs), the bucket of a
+ * point being its cluster id modulo the number of buckets.
+ * <p/>
  * Author: antoine.amend@gmail.com
  * Date: 21/03/14
  */
 public class ClusterDataMapper extends
         Mapper<WritableComparable, ArrayPrimitiveWritable, IntWritable, ObjectWritable> {
 
-    private static final IntWritable KEY = new IntWritable();
+    private final IntWritable outputKey = new IntWritable();
+    private static final int OUTPUT_BATCH = 256;
     public static final String COUNTER = "data";
     public static final String COUNTER_CLUSTERED = "clustered.points";
     public static final String COUNTER_NON_CLUSTERED = "non.clustered.points";
     public static final String CLUSTERS_FINAL_DIR_CONF = "cluster.final.dir_conf";
 
-    private List<Cluster> clusters;
+    private ClusterIndex clusters;
     private static final Logger LOGGER =
             LoggerFactory.getLogger(ClusterDataMapper.class);
 
     private DistanceMeasure measure;
+    private Instrumentation instrumentation;
     private float minSimilarity;
+    private int threads;
+    private MultipleOutputs<IntWritable, ObjectWritable> outputs;
+    private String[] buckets;
 
     @Override
     protected void setup(Context context) throws IOException {
 
         // Configure distance measure
         Configuration conf = context.getConfiguration();
-        measure = Canopy.configureMeasure(conf);
+        instrumentation = new Instrumentation(conf);
+        measure = instrumentation.configureMeasure(conf);
         minSimilarity = conf.getFloat(Canopy.MIN_SIMILARITY, 0.0f);
-        clusters = Lists.newArrayList();
+        threads = conf.getInt(Canopy.MAPPER_THREADS, 1);
+        ClusterCenters centers = loadCenters(conf, measure);
+
+        // Buckets replace the reducers grouping points by cluster
+        int numBuckets = conf.getInt(Canopy.OUTPUT_BUCKETS, 0);
+        if (numBuckets > 0 && context.getNumReduceTasks() == 0) {
+            outputs = new MultipleOutputs<IntWritable, ObjectWritable>(context);
+            buckets = new String[numBuckets];
+            for (int i = 0; i < numBuckets; i++) {
+                buckets[i] = String.format("bucket-%05d/part", i);
+            }
+        }
+
+        // Index centers for nearest cluster lookups
+        clusters = ClusterIndexes.configureIndex(conf, centers, measure);
+        LOGGER.info("Loaded {} clusters into {}", clusters.size(),
+                clusters.getClass().getSimpleName());
+    }
+
+    /**
+     * Load the clusters added to distributed cache from CLUSTERS_FINAL_DIR_CONF,
+     * either from their center store or from their sequence files. Centers
+     * are canonicalized for the supplied measure.
+     * <p/>
+     * A center store is returned as is, its centers staying off heap, unless
+     * some of them are not canonical for the supplied measure, in which case
+     * all of them are copied.
+     *
+     * @param conf    the Configuration
+     * @param measure the DistanceMeasure
+     * @return the loaded clusters, in file order
+     */
+    static ClusterCenters loadCenters(Configuration conf, DistanceMeasure measure) throws IOException {
+
+        List<Cluster> centers = Lists.newArrayList();
 
         for (URI uri : DistributedCache.getCacheFiles(conf)) {
 
             if (uri.getPath().contains(conf.get(ClusterDataMapper.CLUSTERS_FINAL_DIR_CONF))) {
                 LOGGER.info("Loading file [{}] from distributed cache", uri);
+
+                if (new Path(uri).getName().equals(CenterStore.FILE_NAME)) {
+                    // Read canopies from a (mapped) center store
+                    CenterStore store = openStore(conf, uri);
+                    if (store.size() > 0 && isCanonical(store, measure)) {
+                        return store;
+                    }
+                    centers.addAll(canonicalize(store, measure));
+                    continue;
+                }
+
                 // Read canopies
                 SequenceFile.Reader reader = new SequenceFile.Reader(conf,
                         SequenceFile.Reader.file(new Path(uri)));
@@ -64,54 +143,223 @@ public class ClusterDataMapper extends
                 while (reader.next(key, value)) {
                     i++;
                     Cluster cluster = value.get();
-                    clusters.add(cluster);
+                    int[] center = DistanceMeasures.canonicalize(measure, cluster.getCenter());
+                    if (center != cluster.getCenter()) {
+                        cluster = new Canopy(cluster.getId(), center, cluster.getNum());
+                    }
+                    centers.add(cluster);
                 }
 
                 IOUtils.closeStream(reader);
             }
         }
 
-        if (clusters.size() == 0) {
+        if (centers.size() == 0) {
             throw new IOException(
                     "Could not find / load any canopy. Check distributed cache");
         }
+        return new ClusterCenterList(centers);
+    }
+
+    private static boolean isCanonical(CenterStore store, DistanceMeasure measure) {
+        if (!(DistanceMeasures.unwrap(measure) instanceof CanonicalDistanceMeasure)) {
+            return true;
+        }
+        for (int i = 0; i < store.size(); i++) {
+            int[] center = store.getCenter(i);
+            if (DistanceMeasures.canonicalize(measure, center) != center) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Cluster> canonicalize(CenterStore store, DistanceMeasure measure) {
+        List<Cluster> centers = Lists.newArrayList();
+        for (int i = 0; i < store.size(); i++) {
+            int[] center = DistanceMeasures.canonicalize(measure, store.getCenter(i));
+            centers.add(new Canopy(store.getId(i), center, store.getNum(i)));
+        }
+        return centers;
+    }
+
+    private static CenterStore openStore(Configuration conf, URI uri) throws IOException {
 
-        LOGGER.info("Loaded {} clusters", clusters.size());
+        // Map the local copy when available, so that tasks share page cache
+        Path[] localFiles = DistributedCache.getLocalCacheFiles(conf);
+        if (localFiles != null) {
+            for (Path localFile : localFiles) {
+                File file = new File(localFile.toUri().getPath());
+                if (localFile.getName().equals(CenterStore.FILE_NAME) && file.exists()) {
+                    return CenterStore.map(file);
+                }
+            }
+        }
+
+        // Store is local already when running locally (see LocalEngine)
+        FileSystem fileSystem = FileSystem.get(uri, conf);
+        if (fileSystem instanceof LocalFileSystem) {
+            return CenterStore.map(new File(uri.getPath()));
+        }
+        return CenterStore.read(fileSystem, new Path(uri));
     }
 
     @Override
     protected void map(WritableComparable key, ArrayPrimitiveWritable value, Context context)
             throws IOException, InterruptedException {
+        write(key, nearest((int[]) value.get(), measure), outputKey, context);
+    }
+
+    @Override
+    public void run(Context context) throws IOException, InterruptedException {
+        setup(context);
+        if (threads <= 1) {
+            while (context.nextKeyValue()) {
+                map(context.getCurrentKey(), context.getCurrentValue(), context);
+            }
+        } else {
+            runThreaded(context);
+        }
+        cleanup(context);
+    }
+
+    private void runThreaded(final Context context) throws IOException, InterruptedException {
+
+        // Measures may hold state, one per thread
+        Configuration conf = context.getConfiguration();
+        final DistanceMeasure[] measures = new DistanceMeasure[threads];
+        final Queue<WritableComparable> free = new ConcurrentLinkedQueue<WritableComparable>();
+        final Output[] outputs = new Output[threads];
+        for (int i = 0; i < threads; i++) {
+            measures[i] = instrumentation.configureMeasure(conf);
+            outputs[i] = new Output(free);
+        }
+
+        PartitionedRunner<WritableComparable, int[]> runner = new PartitionedRunner<WritableComparable, int[]>(
+                threads, new PartitionedRunner.Worker<WritableComparable, int[]>() {
+            @Override
+            public void process(int partition, WritableComparable key, int[] point)
+                    throws IOException, InterruptedException {
+                outputs[partition].add(key, nearest(point, measures[partition]), context);
+            }
+        });
 
-        // Get distance from that point to any cluster center
-        double[] pdf = new double[clusters.size()];
-        for (int i = 0; i < clusters.size(); i++) {
-            Cluster cluster = clusters.get(i);
-            pdf[i] = cluster.pdf((int[]) value.get(), measure);
+        // Input keys are reused by the record reader and must be copied,
+        // points need not as ArrayPrimitiveWritable reads each of them into
+        // a new array
+        boolean done = false;
+        try {
+            while (context.nextKeyValue()) {
+                WritableComparable current = context.getCurrentKey();
+                WritableComparable key = free.poll();
+                if (key == null) {
+                    key = ReflectionUtils.newInstance(current.getClass(), conf);
+                }
+                ReflectionUtils.copy(conf, current, key);
+                int[] point = (int[]) context.getCurrentValue().get();
+                runner.submit(key, point);
+            }
+            runner.finish();
+            done = true;
+        } finally {
+            if (!done) {
+                runner.abort();
+            }
+        }
+
+        // Workers are done, write their last assignments
+        for (Output output : outputs) {
+            output.flush(context);
         }
+    }
 
-        // Get the cluster with smallest distance to that point
-        double maxSimilarity = pdf[0];
-        int maxSimilarityId = 0;
-        for (int i = 1; i < pdf.length; i++) {
-            if (pdf[i] > maxSimilarity) {
-                maxSimilarity = pdf[i];
-                maxSimilarityId = i;
+    /**
+     * Assignments of a worker thread, written by batches
+     */
+    private class Output {
+
+        private final IntWritable clusterId = new IntWritable();
+        private final WritableComparable[] keys = new WritableComparable[OUTPUT_BATCH];
+        private final int[] positions = new int[OUTPUT_BATCH];
+        private final Queue<WritableComparable> free;
+        private int size;
+
+        private Output(Queue<WritableComparable> free) {
+            this.free = free;
+        }
+
+        private void add(WritableComparable key, int position, Context context)
+                throws IOException, InterruptedException {
+            keys[size] = key;
+            positions[size] = position;
+            if (++size == OUTPUT_BATCH) {
+                flush(context);
+            }
+        }
+
+        private void flush(Context context) throws IOException, InterruptedException {
+            synchronized (context) {
+                for (int i = 0; i < size; i++) {
+                    write(keys[i], positions[i], clusterId, context);
+                }
             }
+            // Keys are not referenced anymore, they can be reused for input
+            for (int i = 0; i < size; i++) {
+                free.offer(keys[i]);
+                keys[i] = null;
+            }
+            size = 0;
         }
+    }
 
-        if (maxSimilarity < minSimilarity) {
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (outputs != null) {
+            outputs.close();
+        }
+        instrumentation.report(context);
+    }
+
+    private int nearest(int[] point, DistanceMeasure measure) {
+        // Get the cluster with smallest distance to that point, if and
+        // only if his similarity is greater than the minimum one. Only its
+        // position is needed, its id being read straight from the centers
+        point = DistanceMeasures.canonicalize(measure, point);
+        return clusters.nearest(point, measure, 1.0d - minSimilarity);
+    }
+
+    private void write(WritableComparable key, int position, IntWritable clusterId, Context context)
+            throws IOException, InterruptedException {
+
+        DuplicatesWritable duplicates = key instanceof DuplicatesWritable ? (DuplicatesWritable) key : null;
+        long points = duplicates == null ? 1L : duplicates.getCount();
+
+        if (position < 0) {
             // Point could not be added to any cluster
-            context.getCounter(COUNTER, COUNTER_NON_CLUSTERED).increment(1L);
+            context.getCounter(COUNTER, COUNTER_NON_CLUSTERED).increment(points);
             return;
         }
 
         // Point has been added to that cluster
-        context.getCounter(COUNTER, COUNTER_CLUSTERED).increment(1L);
-        Cluster cluster = clusters.get(maxSimilarityId);
+        context.getCounter(COUNTER, COUNTER_CLUSTERED).increment(points);
+
+        clusterId.set(clusters.getCenters().getId(position));
+        if (duplicates == null) {
+            emit(clusterId, new ObjectWritable(key), context);
+        } else {
+            for (Writable original : duplicates.getKeys()) {
+                emit(clusterId, new ObjectWritable(original), context);
+            }
+        }
 
-        KEY.set(cluster.getId());
-        context.write(KEY, new ObjectWritable(key));
+    }
 
+    private void emit(IntWritable clusterId, ObjectWritable value, Context context)
+            throws IOException, InterruptedException {
+        if (outputs == null) {
+            context.write(clusterId, value);
+        } else {
+            outputs.write(clusterId, value, buckets[(clusterId.get() & Integer.MAX_VALUE) % buckets.length]);
+        }
     }
 }
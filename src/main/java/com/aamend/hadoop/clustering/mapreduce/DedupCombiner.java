@@ -0,0 +1,40 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Collapse the identical points of a map task into a single record, or
+ * several when their original keys are kept and exceed MAX_KEYS_CONF.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class DedupCombiner extends
+        Reducer<CenterWritable, DuplicatesWritable, CenterWritable, DuplicatesWritable> {
+
+    private final DuplicatesWritable duplicates = new DuplicatesWritable();
+    private int maxKeys;
+
+    @Override
+    protected void setup(Context context) {
+        maxKeys = context.getConfiguration().getInt(DuplicatesWritable.MAX_KEYS_CONF,
+                DuplicatesWritable.DEFAULT_MAX_KEYS);
+    }
+
+    @Override
+    protected void reduce(CenterWritable key, Iterable<DuplicatesWritable> values, Context context)
+            throws IOException, InterruptedException {
+        duplicates.clear();
+        for (DuplicatesWritable value : values) {
+            if (!duplicates.fits(value, maxKeys)) {
+                context.write(key, duplicates);
+                duplicates.clear();
+            }
+            duplicates.add(value);
+        }
+        context.write(key, duplicates);
+    }
+}
@@ -0,0 +1,38 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+
+/**
+ * Key each point by its content (see DEDUP), so that identical points are
+ * partitioned by their hash and grouped by the same reducer. Original keys
+ * are only kept when KEEP_KEYS_CONF is set, as they are needed to expand
+ * assignments of clusterData but not to build canopies.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class DedupMapper extends
+        Mapper<WritableComparable, ArrayPrimitiveWritable, CenterWritable, DuplicatesWritable> {
+
+    public static final String KEEP_KEYS_CONF = "cluster.dedup.keys";
+
+    private final CenterWritable center = new CenterWritable();
+    private boolean keepKeys;
+
+    @Override
+    protected void setup(Context context) {
+        keepKeys = context.getConfiguration().getBoolean(KEEP_KEYS_CONF, false);
+    }
+
+    @Override
+    protected void map(WritableComparable key, ArrayPrimitiveWritable value, Context context)
+            throws IOException, InterruptedException {
+        center.set((int[]) value.get());
+        context.write(center, new DuplicatesWritable(keepKeys ? key : null));
+    }
+}
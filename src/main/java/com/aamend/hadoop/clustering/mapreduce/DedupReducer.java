@@ -0,0 +1,54 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Write a single representative of identical points, keyed by their number
+ * (and original keys if kept), so that its output can be read as any input
+ * by both CanopyCreateInitMapper and ClusterDataMapper. When original keys
+ * are kept, the representative is written once per MAX_KEYS_CONF keys, so
+ * that no record holds all the keys of a frequent point.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class DedupReducer extends
+        Reducer<CenterWritable, DuplicatesWritable, DuplicatesWritable, ArrayPrimitiveWritable> {
+
+    public static final String COUNTER = "data";
+    public static final String COUNTER_DISTINCT = "distinct.points";
+    public static final String COUNTER_DUPLICATES = "duplicate.points";
+
+    private final DuplicatesWritable duplicates = new DuplicatesWritable();
+    private int maxKeys;
+
+    @Override
+    protected void setup(Context context) {
+        maxKeys = context.getConfiguration().getInt(DuplicatesWritable.MAX_KEYS_CONF,
+                DuplicatesWritable.DEFAULT_MAX_KEYS);
+    }
+
+    @Override
+    protected void reduce(CenterWritable key, Iterable<DuplicatesWritable> values, Context context)
+            throws IOException, InterruptedException {
+        ArrayPrimitiveWritable point = new ArrayPrimitiveWritable(key.get());
+        long count = 0L;
+        duplicates.clear();
+        for (DuplicatesWritable value : values) {
+            if (!duplicates.fits(value, maxKeys)) {
+                count += duplicates.getCount();
+                context.write(duplicates, point);
+                duplicates.clear();
+            }
+            duplicates.add(value);
+        }
+        count += duplicates.getCount();
+        context.write(duplicates, point);
+        context.getCounter(COUNTER, COUNTER_DISTINCT).increment(1L);
+        context.getCounter(COUNTER, COUNTER_DUPLICATES).increment(count - 1L);
+    }
+}
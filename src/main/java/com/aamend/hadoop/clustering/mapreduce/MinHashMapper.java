@@ -0,0 +1,98 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Key each point by a Locality Sensitive Hashing bucket, so that points
+ * with a high Jaccard similarity are likely to be sorted next to each other.
+ * MinHash signature is made of MINHASH_BANDS bands of MINHASH_ROWS rows,
+ * and the bucket is the smallest band hash. A point is emitted only once so
+ * that observations are not counted twice by the next canopy iterations.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class MinHashMapper extends
+        Mapper<WritableComparable, ArrayPrimitiveWritable, LongWritable, ArrayPrimitiveWritable> {
+
+    private int bands;
+    private int rows;
+    private long[] multipliers;
+    private long[] increments;
+    private long[] signature;
+
+    private final LongWritable outputKey = new LongWritable();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+
+        // Retrieve params fom configuration
+        Configuration conf = context.getConfiguration();
+        bands = conf.getInt(Canopy.MINHASH_BANDS, 0);
+        rows = conf.getInt(Canopy.MINHASH_ROWS, 4);
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("MinHash bands and rows must be greater or equals to 1");
+        }
+
+        // Same hash functions must be used by every mapper
+        Random random = new Random(conf.getLong(Canopy.MINHASH_SEED, 0L));
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+        signature = new long[bands * rows];
+    }
+
+    @Override
+    protected void map(WritableComparable key, ArrayPrimitiveWritable value, Context context)
+            throws IOException, InterruptedException {
+        outputKey.set(bucket((int[]) value.get()));
+        context.write(outputKey, value);
+    }
+
+    long bucket(int[] point) {
+
+        // MinHash signature
+        for (int i = 0; i < signature.length; i++) {
+            long min = Long.MAX_VALUE;
+            for (int x : point) {
+                long h = mix(x * multipliers[i] + increments[i]);
+                if (h < min) {
+                    min = h;
+                }
+            }
+            signature[i] = min;
+        }
+
+        // Smallest band hash
+        long bucket = Long.MAX_VALUE;
+        for (int b = 0; b < bands; b++) {
+            long h = b;
+            for (int r = 0; r < rows; r++) {
+                h = mix(h * 31 + signature[b * rows + r]);
+            }
+            if (h < bucket) {
+                bucket = h;
+            }
+        }
+        return bucket;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,151 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch records read by a single thread to several worker threads, each
+ * worker owning a partition (e.g. its own DistanceMeasure and canopies).
+ * Consecutive records are sent by batches to the same partition, partitions
+ * being used in turn, so that each partition sees runs of consecutive input
+ * records. Supplied records must not be reused by the caller.
+ * <p/>
+ * Date: 17/10/26
+ */
+public class PartitionedRunner<K, V> {
+
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Process records of a partition, always called by the same thread
+     */
+    public interface Worker<K, V> {
+        void process(int partition, K key, V value) throws IOException, InterruptedException;
+    }
+
+    private final Worker<K, V> worker;
+    private final List<BlockingQueue<List<Object>>> queues;
+    private final List<Thread> threads;
+    private volatile Throwable failure;
+
+    private List<Object> batch = new ArrayList<Object>(2 * BATCH_SIZE);
+    private int next;
+
+    public PartitionedRunner(int partitions, Worker<K, V> worker) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be greater or equals to 1");
+        }
+        this.worker = worker;
+        this.queues = new ArrayList<BlockingQueue<List<Object>>>(partitions);
+        this.threads = new ArrayList<Thread>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            final int partition = i;
+            final BlockingQueue<List<Object>> queue = new ArrayBlockingQueue<List<Object>>(2);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    consume(partition, queue);
+                }
+            }, "partition-" + i);
+            thread.setDaemon(true);
+            queues.add(queue);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(int partition, BlockingQueue<List<Object>> queue) {
+        try {
+            while (true) {
+                List<Object> records = queue.take();
+                if (records.isEmpty()) {
+                    // End of input
+                    return;
+                }
+                // Keep draining after a failure so that producer never blocks
+                for (int i = 0; i < records.size() && failure == null; i += 2) {
+                    worker.process(partition, (K) records.get(i), (V) records.get(i + 1));
+                }
+            }
+        } catch (Throwable t) {
+            // Keep the first failure, others may only be due to abort
+            synchronized (this) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+            queue.clear();
+        }
+    }
+
+    public void submit(K key, V value) throws IOException, InterruptedException {
+        checkFailure();
+        batch.add(key);
+        batch.add(value);
+        if (batch.size() == 2 * BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException, InterruptedException {
+        if (!batch.isEmpty()) {
+            put(queues.get(next), batch);
+            next = (next + 1) % queues.size();
+            batch = new ArrayList<Object>(2 * BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Process remaining records and wait for all workers to complete
+     */
+    public void finish() throws IOException, InterruptedException {
+        flush();
+        for (BlockingQueue<List<Object>> queue : queues) {
+            put(queue, new ArrayList<Object>(0));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        checkFailure();
+    }
+
+    private void put(BlockingQueue<List<Object>> queue, List<Object> records)
+            throws IOException, InterruptedException {
+        // A failed worker does not consume its queue anymore
+        while (!queue.offer(records, 1, TimeUnit.SECONDS)) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Stop workers after a failure of the producer
+     */
+    public void abort() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException, InterruptedException {
+        Throwable t = failure;
+        if (t == null) {
+            return;
+        }
+        abort();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+}
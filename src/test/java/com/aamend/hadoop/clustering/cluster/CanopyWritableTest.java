@@ -0,0 +1,91 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import junit.framework.Assert;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class CanopyWritableTest {
+
+    @Test
+    public void testCompact() throws IOException {
+        int[] center = new int[]{3, 17, 250, 1000000, -5, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        Cluster cluster = roundTrip(new CanopyWritable(new Canopy(42, center, 123456789L)));
+        Assert.assertEquals(42, cluster.getId());
+        Assert.assertEquals(123456789L, cluster.getNum());
+        Assert.assertTrue(Arrays.equals(center, cluster.getCenter()));
+
+        cluster = roundTrip(new CanopyWritable(new Canopy(1, new int[0], 0L)));
+        Assert.assertEquals(0, cluster.getCenter().length);
+    }
+
+    @Test
+    public void testCompactIsSmaller() throws IOException {
+        int[] center = new int[]{166, 143, 23, 75, 25, 91, 101, 54};
+        DataOutputBuffer out = new DataOutputBuffer();
+        new CanopyWritable(new Canopy(7, center, 12L)).write(out);
+        Assert.assertEquals(14, out.getLength());
+        Assert.assertTrue(out.getLength() < legacy(7, center, 12L).getLength());
+    }
+
+    @Test
+    public void testWeighted() throws IOException {
+        int[] center = new int[]{166, 143, 23, 75, 25, 91, 101, 54};
+        Cluster cluster = roundTrip(new CanopyWritable(new Canopy(7, center, 0L, 250L)));
+        Assert.assertEquals(0L, cluster.getNum());
+        Assert.assertEquals(250L, cluster.getWeight());
+        Assert.assertTrue(Arrays.equals(center, cluster.getCenter()));
+
+        // Weight is only written when points were deduplicated
+        DataOutputBuffer out = new DataOutputBuffer();
+        new CanopyWritable(new Canopy(7, center, 12L, 1L)).write(out);
+        Assert.assertEquals(14, out.getLength());
+        Assert.assertEquals(1L, roundTrip(new CanopyWritable(new Canopy(7, center, 12L))).getWeight());
+    }
+
+    @Test
+    public void testLegacy() throws IOException {
+        int[] center = new int[]{166, 143, 23, 75, 25, 91, 101, 54};
+        DataOutputBuffer out = legacy(70000, center, 12L);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        CanopyWritable writable = new CanopyWritable();
+        writable.readFields(in);
+        Cluster cluster = writable.get();
+        Assert.assertEquals(70000, cluster.getId());
+        Assert.assertEquals(12L, cluster.getNum());
+        Assert.assertTrue(Arrays.equals(center, cluster.getCenter()));
+    }
+
+    private Cluster roundTrip(CanopyWritable writable) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        writable.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        CanopyWritable read = new CanopyWritable();
+        read.readFields(in);
+        Assert.assertEquals(0, in.available());
+        return read.get();
+    }
+
+    private DataOutputBuffer legacy(int id, int[] center, long num) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        out.writeInt(id);
+        out.writeLong(num);
+        out.writeUTF(int.class.getName());
+        out.writeInt(center.length);
+        for (int x : center) {
+            out.writeInt(x);
+        }
+        return out;
+    }
+}
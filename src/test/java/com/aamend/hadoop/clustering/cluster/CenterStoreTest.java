@@ -0,0 +1,53 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class CenterStoreTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        List<Cluster> clusters = new ArrayList<Cluster>();
+        clusters.add(new Canopy(3, new int[]{1, 2, 3}, 10L));
+        clusters.add(new Canopy(7, new int[0], 0L));
+        clusters.add(new Canopy(42, new int[]{Integer.MIN_VALUE, -1, Integer.MAX_VALUE}, Long.MAX_VALUE));
+
+        File file = File.createTempFile("centers", ".bin");
+        file.deleteOnExit();
+        Assert.assertTrue(file.delete());
+
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path path = new Path(file.getAbsolutePath());
+        CenterStore.write(fs, path, clusters);
+
+        assertEquals(clusters, CenterStore.map(file));
+        assertEquals(clusters, CenterStore.read(fs, path));
+        Assert.assertEquals(0, CenterStore.map(file).getCenterLength(1));
+    }
+
+    private static void assertEquals(List<Cluster> expected, CenterStore store) {
+        Assert.assertEquals(expected.size(), store.size());
+        List<Cluster> actual = store.getClusters();
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            Assert.assertEquals(expected.get(i).getNum(), actual.get(i).getNum());
+            Assert.assertTrue(Arrays.equals(expected.get(i).getCenter(), actual.get(i).getCenter()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import junit.framework.Assert;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class CenterWritableTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        int[] center = new int[]{166, -143, 23, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        DataOutputBuffer out = new DataOutputBuffer();
+        new CenterWritable(center).write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        CenterWritable read = new CenterWritable();
+        read.readFields(in);
+        Assert.assertTrue(Arrays.equals(center, read.get()));
+        Assert.assertEquals(new CenterWritable(center), read);
+        Assert.assertEquals(new CenterWritable(center).hashCode(), read.hashCode());
+    }
+
+    @Test
+    public void testSlice() throws IOException {
+        int[] center = new int[]{166, -143, 23};
+        int[] array = new int[]{7, 166, -143, 23, 8};
+        CenterWritable slice = new CenterWritable();
+        slice.set(array, 1, 3);
+        Assert.assertEquals(new CenterWritable(center), slice);
+        Assert.assertEquals(new CenterWritable(center).hashCode(), slice.hashCode());
+
+        // Serialized as the center alone
+        DataOutputBuffer out = new DataOutputBuffer();
+        slice.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        CenterWritable read = new CenterWritable();
+        read.readFields(in);
+        Assert.assertTrue(Arrays.equals(center, read.get()));
+        Assert.assertTrue(Arrays.equals(center, slice.get()));
+    }
+
+    @Test
+    public void testRawComparator() throws IOException {
+        WritableComparator comparator = WritableComparator.get(CenterWritable.class);
+        Assert.assertTrue(comparator instanceof CenterWritable.Comparator);
+
+        Random random = new Random(0L);
+        for (int i = 0; i < 1000; i++) {
+            CenterWritable c1 = new CenterWritable(randomCenter(random));
+            CenterWritable c2 = new CenterWritable(i % 10 == 0 ? c1.get().clone() : randomCenter(random));
+            DataOutputBuffer b1 = new DataOutputBuffer();
+            DataOutputBuffer b2 = new DataOutputBuffer();
+            c1.write(b1);
+            c2.write(b2);
+            int raw = comparator.compare(b1.getData(), 0, b1.getLength(), b2.getData(), 0, b2.getLength());
+            Assert.assertEquals(Integer.signum(c1.compareTo(c2)), Integer.signum(raw));
+        }
+    }
+
+    private int[] randomCenter(Random random) {
+        int[] center = new int[random.nextInt(4)];
+        for (int i = 0; i < center.length; i++) {
+            center[i] = random.nextInt(5) - 2 + (random.nextBoolean() ? 0 : Integer.MIN_VALUE);
+        }
+        return center;
+    }
+}
@@ -0,0 +1,168 @@
+package com.aamend.hadoop.clustering.cluster;
+
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.LevenshteinDistanceMeasure;
+import com.google.common.primitives.Ints;
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class MedoidSelectorTest {
+
+    @Test
+    public void testExact() throws IOException {
+        DistanceMeasure measure = measure();
+        List<int[]> points = randomPoints(new Random(0L), 300);
+        Configuration conf = new Configuration();
+        int medoid = new MedoidSelector(conf, measure).select(points);
+        Assert.assertEquals(bruteForce(points, measure), medoid);
+
+        Canopy canopy = new Canopy(1, points.get(0));
+        canopy.computeCenter(points, measure);
+        Assert.assertSame(points.get(medoid), canopy.getCenter());
+    }
+
+    @Test
+    public void testSampled() throws IOException {
+        DistanceMeasure measure = measure();
+        List<int[]> points = randomPoints(new Random(1L), 2000);
+        Configuration conf = new Configuration();
+        conf.setInt(Canopy.MEDOID_EXACT_MAX, 500);
+        conf.setInt(Canopy.MEDOID_SAMPLE_SIZE, 100);
+        conf.setInt(Canopy.MEDOID_SAMPLES, 5);
+        int sampled = new MedoidSelector(conf, measure).select(points);
+        int exact = bruteForce(points, measure);
+
+        // Approximated medoid should not be much worse than the exact one
+        Assert.assertTrue(cost(points, sampled, measure) <= cost(points, exact, measure) * 1.05d);
+        Assert.assertEquals(sampled, new MedoidSelector(conf, measure).select(points));
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        DistanceMeasure measure = measure();
+        List<int[]> points = randomPoints(new Random(2L), 1000);
+        Configuration conf = new Configuration();
+        conf.set(Canopy.CLUSTER_MEASURE, LevenshteinDistanceMeasure.class.getName());
+        conf.setInt(Canopy.MEDOID_EXACT_MAX, 500);
+        int sampled = new MedoidSelector(conf, measure).select(points);
+        int exact = new MedoidSelector(measure).select(points);
+
+        conf.setInt(Canopy.MEDOID_THREADS, 4);
+        MedoidSelector selector = new MedoidSelector(conf, measure);
+        Assert.assertEquals(sampled, selector.select(points));
+        conf.setInt(Canopy.MEDOID_EXACT_MAX, 1000);
+        MedoidSelector exactSelector = new MedoidSelector(conf, measure);
+        Assert.assertEquals(exact, exactSelector.select(points));
+        selector.close();
+        exactSelector.close();
+    }
+
+    @Test
+    public void testStreaming() {
+        DistanceMeasure measure = measure();
+        List<int[]> points = randomPoints(new Random(3L), 1000);
+        int exact = new MedoidSelector(measure).select(points);
+
+        // Exact as long as all points fit
+        StreamingMedoid streaming = new StreamingMedoid(measure, 1000);
+        for (int[] point : points) {
+            streaming.observe(point);
+        }
+        Assert.assertSame(points.get(exact), streaming.getMedoid());
+
+        streaming = new StreamingMedoid(measure, 100);
+        streaming.reset(0L);
+        for (int[] point : points) {
+            streaming.observe(point);
+        }
+        Assert.assertEquals(1000L, streaming.getSeen());
+        int approximated = points.indexOf(streaming.getMedoid());
+        Assert.assertTrue(cost(points, approximated, measure) <= cost(points, exact, measure) * 1.05d);
+    }
+
+    @Test
+    public void testWeighted() throws IOException {
+        DistanceMeasure measure = measure();
+        List<int[]> points = randomPoints(new Random(4L), 600);
+
+        // Collapse identical points, weighing their number of duplicates
+        Map<List<Integer>, Integer> positions = new HashMap<List<Integer>, Integer>();
+        List<int[]> distinct = new ArrayList<int[]>();
+        long[] weights = new long[points.size()];
+        for (int[] point : points) {
+            List<Integer> content = Ints.asList(point);
+            Integer position = positions.get(content);
+            if (position == null) {
+                position = distinct.size();
+                positions.put(content, position);
+                distinct.add(point);
+            }
+            weights[position]++;
+        }
+        Assert.assertTrue(distinct.size() < points.size());
+
+        // Same medoid as if all duplicates were compared
+        double exact = cost(points, bruteForce(points, measure), measure);
+        int weighted = new MedoidSelector(measure).select(distinct, weights);
+        Assert.assertEquals(exact, cost(points, points.indexOf(distinct.get(weighted)), measure), 1e-9d);
+
+        StreamingMedoid streaming = new StreamingMedoid(measure, distinct.size());
+        for (int i = 0; i < distinct.size(); i++) {
+            streaming.observe(distinct.get(i), weights[i]);
+        }
+        Assert.assertEquals(exact, cost(points, points.indexOf(streaming.getMedoid()), measure), 1e-9d);
+    }
+
+    private int bruteForce(List<int[]> points, DistanceMeasure measure) {
+        int best = 0;
+        for (int i = 1; i < points.size(); i++) {
+            if (cost(points, i, measure) < cost(points, best, measure)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private double cost(List<int[]> points, int i, DistanceMeasure measure) {
+        double cost = 0.0d;
+        for (int j = 0; j < points.size(); j++) {
+            if (j != i) {
+                cost += measure.distance(points.get(i), points.get(j));
+            }
+        }
+        return cost;
+    }
+
+    private DistanceMeasure measure() {
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        measure.configure(new Configuration());
+        return measure;
+    }
+
+    private List<int[]> randomPoints(Random random, int size) {
+        int[] reference = new int[]{166, 143, 23, 75, 25, 91, 101, 54};
+        List<int[]> points = new ArrayList<int[]>();
+        for (int i = 0; i < size; i++) {
+            int[] point = reference.clone();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                point[random.nextInt(point.length)] = random.nextInt(200);
+            }
+            points.add(point);
+        }
+        return points;
+    }
+}
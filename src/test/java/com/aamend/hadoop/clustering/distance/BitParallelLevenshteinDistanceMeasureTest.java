@@ -0,0 +1,181 @@
+package com.aamend.hadoop.clustering.distance;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class BitParallelLevenshteinDistanceMeasureTest {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BitParallelLevenshteinDistanceMeasureTest.class);
+    private DecimalFormat df = new DecimalFormat("###.##");
+
+    @Test
+    public void testDistance() {
+
+        BitParallelLevenshteinDistanceMeasure measure = new BitParallelLevenshteinDistanceMeasure();
+        measure.configure(new Configuration());
+
+        int[] seq1 = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        int[] seq2 = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        double dist = measure.distance(seq1, seq2);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(0.0d, round(dist));
+
+        // 2 substitution
+        int[] seq3 = new int[]{15, 2, 3, 4, 15, 6, 7, 8, 9, 10};
+        dist = measure.distance(seq1, seq3);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(0.20d, round(dist));
+
+        // 2 insertions
+        int[] seq4 = new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+        dist = measure.distance(seq1, seq4);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(0.17d, round(dist));
+
+        // 2 deletions
+        int[] seq5 = new int[]{2, 3, 4, 5, 7, 8, 9, 10};
+        dist = measure.distance(seq1, seq5);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(0.20d, round(dist));
+
+    }
+
+    @Test
+    public void testDistanceThreshold() {
+
+        BitParallelLevenshteinDistanceMeasure measure = new BitParallelLevenshteinDistanceMeasure();
+        Configuration conf = new Configuration();
+        conf.setFloat(Canopy.MAX_DISTANCE, 0.18f);
+        measure.configure(conf);
+
+        int[] seq1 = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        int[] seq2 = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        double dist = measure.distance(seq1, seq2);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(0.0d, round(dist));
+
+        // 2 substitution
+        int[] seq3 = new int[]{15, 2, 3, 4, 15, 6, 7, 8, 9, 10};
+        dist = measure.distance(seq1, seq3);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(1.0d, round(dist));
+
+        // 2 insertions
+        int[] seq4 = new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+        dist = measure.distance(seq1, seq4);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(0.17d, round(dist));
+
+        // 2 deletions
+        int[] seq5 = new int[]{2, 3, 4, 5, 7, 8, 9, 10};
+        dist = measure.distance(seq1, seq5);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(1.0d, round(dist));
+    }
+
+    @Test
+    public void testSameAsLevenshtein() {
+
+        Random random = new Random(0L);
+        for (float maxDistance : new float[]{1.0f, 0.5f, 0.2f}) {
+
+            Configuration conf = new Configuration();
+            conf.setFloat(Canopy.MAX_DISTANCE, maxDistance);
+            BitParallelLevenshteinDistanceMeasure measure = new BitParallelLevenshteinDistanceMeasure();
+            LevenshteinDistanceMeasure reference = new LevenshteinDistanceMeasure();
+            measure.configure(conf);
+            reference.configure(conf);
+
+            // Both single word and multi-words (> 64) sequences
+            for (int i = 0; i < 5000; i++) {
+                int[] seq1 = randomSequence(random, 1 + random.nextInt(i % 2 == 0 ? 60 : 200));
+                int[] seq2 = randomSequence(random, 1 + random.nextInt(i % 2 == 0 ? 60 : 200));
+                Assert.assertEquals(reference.distance(seq1, seq2), measure.distance(seq1, seq2));
+                Assert.assertEquals(reference.distance(seq2, seq1), measure.distance(seq2, seq1));
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceWithin() {
+
+        Random random = new Random(0L);
+        Configuration conf = new Configuration();
+        conf.setFloat(Canopy.MAX_DISTANCE, 0.6f);
+        BoundedDistanceMeasure[] measures = new BoundedDistanceMeasure[]{
+                new BitParallelLevenshteinDistanceMeasure(),
+                new LevenshteinDistanceMeasure()
+        };
+
+        for (BoundedDistanceMeasure measure : measures) {
+            measure.configure(conf);
+            for (int i = 0; i < 5000; i++) {
+                int[] seq1 = randomSequence(random, 1 + random.nextInt(100));
+                int[] seq2 = randomSequence(random, 1 + random.nextInt(100));
+                double bound = random.nextDouble();
+                double dist = measure.distance(seq1, seq2);
+                double distWithin = measure.distanceWithin(seq1, seq2, bound);
+                if (dist <= bound) {
+                    Assert.assertEquals(dist, distWithin);
+                } else {
+                    Assert.assertTrue(distWithin > bound);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSlices() {
+
+        Random random = new Random(0L);
+        Configuration conf = new Configuration();
+        conf.setFloat(Canopy.MAX_DISTANCE, 0.6f);
+        SliceDistanceMeasure[] measures = new SliceDistanceMeasure[]{
+                new BitParallelLevenshteinDistanceMeasure(),
+                new LevenshteinDistanceMeasure()
+        };
+
+        for (SliceDistanceMeasure measure : measures) {
+            measure.configure(conf);
+            for (int i = 0; i < 2000; i++) {
+                // Both sequences within a same arena, surrounded by noise
+                int[] seq1 = randomSequence(random, 1 + random.nextInt(100));
+                int[] seq2 = randomSequence(random, 1 + random.nextInt(100));
+                int[] arena = randomSequence(random, seq1.length + seq2.length + 10);
+                System.arraycopy(seq1, 0, arena, 3, seq1.length);
+                System.arraycopy(seq2, 0, arena, seq1.length + 7, seq2.length);
+                double bound = random.nextDouble();
+                Assert.assertEquals(measure.distanceWithin(seq1, seq2, bound),
+                        measure.distanceWithin(arena, 3, seq1.length, arena, seq1.length + 7, seq2.length, bound));
+            }
+        }
+    }
+
+    private int[] randomSequence(Random random, int length) {
+        int[] seq = new int[length];
+        for (int i = 0; i < length; i++) {
+            seq[i] = random.nextInt(4) - 1;
+        }
+        return seq;
+    }
+
+    private double round(double val) {
+        return Double.valueOf(df.format(val));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.aamend.hadoop.clustering.distance;
+
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class InstrumentedDistanceMeasureTest {
+
+    @Test
+    public void testCapabilities() {
+
+        DistanceMeasure levenshtein = InstrumentedDistanceMeasure.wrap(new LevenshteinDistanceMeasure());
+        Assert.assertTrue(levenshtein instanceof EditDistanceMeasure);
+        Assert.assertFalse(levenshtein instanceof MetricDistanceMeasure);
+
+        DistanceMeasure tanimoto = InstrumentedDistanceMeasure.wrap(new SortedSetTanimotoDistanceMeasure());
+        Assert.assertTrue(tanimoto instanceof MetricDistanceMeasure);
+        Assert.assertFalse(tanimoto instanceof EditDistanceMeasure);
+        Assert.assertTrue(DistanceMeasures.unwrap(tanimoto) instanceof SortedSetTanimotoDistanceMeasure);
+
+        // Canonical form of the actual measure
+        int[] point = DistanceMeasures.canonicalize(tanimoto, new int[]{3, 1, 2, 1});
+        Assert.assertEquals(3, point.length);
+    }
+
+    @Test
+    public void testCounters() {
+
+        LevenshteinDistanceMeasure raw = new LevenshteinDistanceMeasure();
+        InstrumentedDistanceMeasure measure = InstrumentedDistanceMeasure.wrap(raw);
+        measure.configure(new Configuration());
+
+        int[] seq1 = new int[]{1, 2, 3, 4, 5, 6, 7, 8};
+        int[] seq2 = new int[]{1, 2, 3, 4, 5, 6, 7, 9};
+        int[] seq3 = new int[]{9, 9, 9, 9, 9, 9, 9, 9};
+        Assert.assertEquals(raw.distance(seq1, seq2), measure.distance(seq1, seq2));
+        Assert.assertEquals(raw.distance(seq1, seq2), DistanceMeasures.distanceWithin(measure, seq1, seq2, 0.5d));
+        Assert.assertTrue(DistanceMeasures.distanceWithin(measure, seq1, seq3, 0.5d) > 0.5d);
+        Assert.assertEquals(1, ((EditDistanceMeasure) measure).editDistance(seq1, seq2, 2));
+
+        Assert.assertEquals(4L, measure.getCalls());
+        Assert.assertEquals(1L, measure.getEarlyExits());
+        Assert.assertTrue(measure.getNanos() > 0L);
+
+        // Rejections by a measure computing every distance in full are no early exits
+        InstrumentedDistanceMeasure unbounded = InstrumentedDistanceMeasure.wrap(new TanimotoDistanceMeasure());
+        Assert.assertTrue(DistanceMeasures.distanceWithin(unbounded, seq1, seq2, 0.0d) > 0.0d);
+        Assert.assertEquals(1L, unbounded.getCalls());
+        Assert.assertEquals(0L, unbounded.getEarlyExits());
+    }
+}
@@ -0,0 +1,151 @@
+package com.aamend.hadoop.clustering.distance;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class SortedSetTanimotoDistanceMeasureTest {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SortedSetTanimotoDistanceMeasureTest.class);
+    private DecimalFormat df = new DecimalFormat("###.##");
+
+    @Test
+    public void testDistance() {
+
+        SortedSetTanimotoDistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+
+        int[] seq1 = measure.canonicalize(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        int[] seq2 = measure.canonicalize(new int[]{10, 9, 8, 7, 6, 5, 4, 3, 2, 1});
+
+        double dist = measure.distance(seq1, seq2);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(0.0d, round(dist));
+
+        // 2 substitution (with the same value), 8 common out of 11
+        int[] seq3 = measure.canonicalize(new int[]{15, 2, 3, 4, 15, 6, 7, 8, 9, 10});
+        dist = measure.distance(seq1, seq3);
+        LOGGER.info("Distance is {}", dist);
+        Assert.assertEquals(0.27d, round(dist));
+
+        // 2 insertions
+        int[] seq4 = measure.canonicalize(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        dist = measure.distance(seq1, seq4);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(0.17d, round(dist));
+
+        // 2 deletions
+        int[] seq5 = measure.canonicalize(new int[]{2, 3, 4, 5, 7, 8, 9, 10});
+        dist = measure.distance(seq1, seq5);
+        LOGGER.info("Distance is {}", round(dist));
+        Assert.assertEquals(0.20d, round(dist));
+
+    }
+
+    @Test
+    public void testCanonicalize() {
+
+        SortedSetTanimotoDistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+
+        int[] sorted = new int[]{-3, 1, 2, 8};
+        Assert.assertSame(sorted, measure.canonicalize(sorted));
+
+        int[] canonical = measure.canonicalize(new int[]{8, 2, 2, -3, 1, 8});
+        Assert.assertEquals(4, canonical.length);
+        for (int i = 0; i < canonical.length; i++) {
+            Assert.assertEquals(sorted[i], canonical[i]);
+        }
+    }
+
+    @Test
+    public void testSkewedSets() {
+
+        SortedSetTanimotoDistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+        Random random = new Random(0L);
+        for (int i = 0; i < 2000; i++) {
+            int[] small = randomSet(random, random.nextInt(10), 1000);
+            int[] large = randomSet(random, random.nextInt(500), 1000);
+            Assert.assertEquals(jaccard(small, large), measure.distance(small, large), 1e-12);
+            Assert.assertEquals(jaccard(small, large), measure.distance(large, small), 1e-12);
+        }
+    }
+
+    @Test
+    public void testDistanceWithin() {
+
+        SortedSetTanimotoDistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+        Random random = new Random(0L);
+        for (int i = 0; i < 5000; i++) {
+            int[] seq1 = randomSet(random, random.nextInt(i % 2 == 0 ? 10 : 200), 300);
+            int[] seq2 = randomSet(random, random.nextInt(200), 300);
+            double bound = random.nextDouble();
+            double dist = measure.distance(seq1, seq2);
+            double distWithin = measure.distanceWithin(seq1, seq2, bound);
+            if (dist <= bound) {
+                Assert.assertEquals(dist, distWithin);
+            } else {
+                Assert.assertTrue(distWithin > bound);
+            }
+        }
+    }
+
+    @Test
+    public void testSlices() {
+
+        SortedSetTanimotoDistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+        Random random = new Random(0L);
+        for (int i = 0; i < 2000; i++) {
+            int[] seq1 = randomSet(random, random.nextInt(200), 300);
+            int[] seq2 = randomSet(random, random.nextInt(200), 300);
+            int[] arena = new int[seq1.length + seq2.length + 10];
+            Arrays.fill(arena, -1);
+            System.arraycopy(seq1, 0, arena, 3, seq1.length);
+            System.arraycopy(seq2, 0, arena, seq1.length + 7, seq2.length);
+            double bound = random.nextDouble();
+            Assert.assertEquals(measure.distanceWithin(seq1, seq2, bound),
+                    measure.distanceWithin(arena, 3, seq1.length, arena, seq1.length + 7, seq2.length, bound));
+        }
+    }
+
+    private int[] randomSet(Random random, int size, int range) {
+        int[] seq = new int[size];
+        for (int i = 0; i < size; i++) {
+            seq[i] = random.nextInt(range);
+        }
+        return new SortedSetTanimotoDistanceMeasure().canonicalize(seq);
+    }
+
+    private double jaccard(int[] seq1, int[] seq2) {
+        Set<Integer> union = new HashSet<Integer>();
+        Set<Integer> intersection = new HashSet<Integer>();
+        for (int i : seq1) {
+            union.add(i);
+        }
+        for (int i : seq2) {
+            if (union.contains(i)) {
+                intersection.add(i);
+            }
+        }
+        for (int i : seq2) {
+            union.add(i);
+        }
+        return union.isEmpty() ? 0.0d : 1 - (double) intersection.size() / union.size();
+    }
+
+    private double round(double val) {
+        return Double.valueOf(df.format(val));
+    }
+
+}
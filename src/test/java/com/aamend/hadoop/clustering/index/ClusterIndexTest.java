@@ -0,0 +1,193 @@
+package com.aamend.hadoop.clustering.index;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CenterStore;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.distance.BitParallelLevenshteinDistanceMeasure;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.LevenshteinDistanceMeasure;
+import com.aamend.hadoop.clustering.distance.SortedSetTanimotoDistanceMeasure;
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class ClusterIndexTest {
+
+    @Test
+    public void testBKTree() {
+        Configuration conf = new Configuration();
+        conf.setFloat(Canopy.MAX_DISTANCE, 0.8f);
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        measure.configure(conf);
+        List<Cluster> clusters = randomClusters(new Random(0L), 500, measure);
+        ClusterIndex index = new BKTreeClusterIndex(clusters, measure);
+        assertSameAsLinear(clusters, index, measure);
+    }
+
+    @Test
+    public void testBKTreeBitParallel() {
+        DistanceMeasure measure = new BitParallelLevenshteinDistanceMeasure();
+        measure.configure(new Configuration());
+        List<Cluster> clusters = randomClusters(new Random(1L), 500, measure);
+        ClusterIndex index = ClusterIndexes.configureIndex(new Configuration(), clusters, measure);
+        Assert.assertTrue(index instanceof BKTreeClusterIndex);
+        assertSameAsLinear(clusters, index, measure);
+    }
+
+    @Test
+    public void testVPTree() {
+        DistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+        List<Cluster> clusters = randomClusters(new Random(2L), 500, measure);
+        ClusterIndex index = ClusterIndexes.configureIndex(new Configuration(), clusters, measure);
+        Assert.assertTrue(index instanceof VPTreeClusterIndex);
+        assertSameAsLinear(clusters, index, measure);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVPTreeRequiresMetric() {
+        Configuration conf = new Configuration();
+        conf.set(Canopy.CLUSTER_INDEX, ClusterIndexes.VP_TREE);
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        measure.configure(conf);
+        ClusterIndexes.configureIndex(conf, randomClusters(new Random(3L), 10, measure), measure);
+    }
+
+    @Test
+    public void testCenterStore() throws IOException {
+
+        // Indexes built in place over a mapped store find the same clusters
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        for (DistanceMeasure measure : new DistanceMeasure[]{
+                new LevenshteinDistanceMeasure(), new SortedSetTanimotoDistanceMeasure()}) {
+            measure.configure(new Configuration());
+            File file = File.createTempFile("centers", ".bin");
+            file.deleteOnExit();
+            Assert.assertTrue(file.delete());
+            List<Cluster> clusters = randomClusters(new Random(7L), 300, measure);
+            CenterStore.write(fs, new Path(file.getAbsolutePath()), clusters);
+            CenterStore store = CenterStore.map(file);
+            ClusterIndex linear = new LinearClusterIndex(clusters);
+            Random random = new Random(8L);
+            for (String type : new String[]{ClusterIndexes.LINEAR, ClusterIndexes.AUTO}) {
+                Configuration conf = new Configuration();
+                conf.set(Canopy.CLUSTER_INDEX, type);
+                ClusterIndex index = ClusterIndexes.configureIndex(conf, store, measure);
+                for (int i = 0; i < 200; i++) {
+                    int[] point = canonical(measure, i % 2 == 0 ? randomPoint(random) :
+                            mutate(random, clusters.get(random.nextInt(clusters.size())).getCenter()));
+                    int expected = linear.nearest(point, measure, 0.6d);
+                    int actual = index.nearest(point, measure, 0.6d);
+                    Assert.assertEquals(expected, actual);
+                    if (expected >= 0) {
+                        Cluster cluster = index.getCenters().getCluster(actual);
+                        Assert.assertEquals(clusters.get(expected).getId(), store.getId(actual));
+                        Assert.assertTrue(Arrays.equals(clusters.get(expected).getCenter(), cluster.getCenter()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCanopyTokenIndex() {
+        DistanceMeasure measure = new SortedSetTanimotoDistanceMeasure();
+        List<Cluster> clusters = randomClusters(new Random(5L), 500, measure);
+        clusters.add(new Canopy(500, new int[0]));
+        Random random = new Random(6L);
+        for (float t1 : new float[]{0.1f, 0.3f, 0.6f, 0.9f}) {
+            CanopyList canopies = new CanopyList(measure, t1, t1 / 2);
+            for (Cluster cluster : clusters) {
+                canopies.add(cluster.getId(), cluster.getCenter(), cluster.getNum());
+            }
+            for (int i = 0; i < 200; i++) {
+                int[] point = i == 0 ? new int[0] : i % 2 == 0 ? randomPoint(random) :
+                        mutate(random, clusters.get(random.nextInt(clusters.size() - 1)).getCenter());
+                point = canonical(measure, point);
+
+                // Same canopies within T1, in the same order
+                List<Cluster> expected = new ArrayList<Cluster>();
+                for (Cluster cluster : clusters) {
+                    if (measure.distance(cluster.getCenter(), point) < t1) {
+                        expected.add(cluster);
+                    }
+                }
+                List<Cluster> actual = new ArrayList<Cluster>();
+                int candidates = canopies.candidates(point);
+                Assert.assertTrue(candidates < clusters.size() || t1 > 0.5f);
+                for (int j = 0; j < candidates; j++) {
+                    int canopy = canopies.getCandidate(j);
+                    Cluster cluster = clusters.get(canopy);
+                    Assert.assertEquals(cluster.getId(), canopies.getId(canopy));
+                    double distance = measure.distance(cluster.getCenter(), point);
+                    if (distance < t1) {
+                        // Packed centers are compared as slices
+                        Assert.assertEquals(distance, canopies.distanceWithin(canopy, point, t1));
+                        actual.add(cluster);
+                    }
+                }
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    private void assertSameAsLinear(List<Cluster> clusters, ClusterIndex index,
+                                    DistanceMeasure measure) {
+        ClusterIndex linear = new LinearClusterIndex(clusters);
+        Random random = new Random(4L);
+        for (double maxDistance : new double[]{0.1d, 0.3d, 0.6d, 1.0d}) {
+            for (int i = 0; i < 200; i++) {
+                int[] point = i % 2 == 0 ? randomPoint(random) :
+                        mutate(random, clusters.get(random.nextInt(clusters.size())).getCenter());
+                point = canonical(measure, point);
+                Assert.assertEquals(linear.nearest(point, measure, maxDistance),
+                        index.nearest(point, measure, maxDistance));
+            }
+        }
+    }
+
+    private List<Cluster> randomClusters(Random random, int size, DistanceMeasure measure) {
+        List<Cluster> clusters = new ArrayList<Cluster>();
+        for (int i = 0; i < size; i++) {
+            int[] center = i > 0 && random.nextInt(10) == 0 ?
+                    clusters.get(random.nextInt(i)).getCenter() : randomPoint(random);
+            clusters.add(new Canopy(i, canonical(measure, center)));
+        }
+        return clusters;
+    }
+
+    private int[] canonical(DistanceMeasure measure, int[] point) {
+        if (measure instanceof SortedSetTanimotoDistanceMeasure) {
+            return ((SortedSetTanimotoDistanceMeasure) measure).canonicalize(point);
+        }
+        return point;
+    }
+
+    private int[] randomPoint(Random random) {
+        int[] point = new int[5 + random.nextInt(20)];
+        for (int i = 0; i < point.length; i++) {
+            point[i] = random.nextInt(30);
+        }
+        return point;
+    }
+
+    private int[] mutate(Random random, int[] center) {
+        int[] point = center.clone();
+        point[random.nextInt(point.length)] = random.nextInt(30);
+        return point;
+    }
+}
@@ -0,0 +1,37 @@
+package com.aamend.hadoop.clustering.job;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class CanopyDriverTest {
+
+    @Test
+    public void testNextReducers() {
+
+        // Default halving
+        Assert.assertEquals(4, CanopyDriver.nextReducers(8, 1000L, 0L, 0.9f, 100000L, false));
+        Assert.assertEquals(4, CanopyDriver.nextReducers(8, 1000L, 5000L, 0.9f, 100000L, false));
+
+        // Converged canopies
+        Assert.assertEquals(1, CanopyDriver.nextReducers(8, 950L, 1000L, 0.9f, 100000L, false));
+
+        // Too many canopies to converge or to halve reducers
+        Assert.assertEquals(6, CanopyDriver.nextReducers(8, 600000L, 610000L, 0.9f, 100000L, false));
+        Assert.assertEquals(8, CanopyDriver.nextReducers(8, 2000000L, 0L, 0.9f, 100000L, false));
+        Assert.assertEquals(4, CanopyDriver.nextReducers(8, 2000000L, 0L, 0.9f, 100000L, true));
+        Assert.assertEquals(1, CanopyDriver.nextReducers(2, 1000L, 0L, 0.9f, 100000L, false));
+    }
+
+    @Test
+    public void testNextThreshold() {
+        Assert.assertEquals(0.5f, CanopyDriver.nextThreshold(0.2f, 0.5f, 1), 1e-6f);
+        Assert.assertEquals(0.35f, CanopyDriver.nextThreshold(0.2f, 0.5f, 2), 1e-6f);
+        Assert.assertEquals(0.3f, CanopyDriver.nextThreshold(0.2f, 0.5f, 4), 1e-6f);
+    }
+}
@@ -0,0 +1,421 @@
+package com.aamend.hadoop.clustering.job;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterStore;
+import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
+import com.aamend.hadoop.clustering.cluster.Instrumentation;
+import com.aamend.hadoop.clustering.distance.DistanceMeasure;
+import com.aamend.hadoop.clustering.distance.LevenshteinDistanceMeasure;
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.ObjectWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class LocalEngineTest {
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path dir;
+    private Path input;
+    private int points;
+
+    @Before
+    public void setUp() throws IOException {
+
+        conf = new Configuration();
+        conf.set("fs.default.name", "file:///");
+        conf.set(Canopy.ENGINE, CanopyDriver.LOCAL_ENGINE);
+        conf.setInt(Canopy.LOCAL_THREADS, 2);
+        fs = FileSystem.getLocal(conf);
+
+        File tmp = File.createTempFile("local-engine", "");
+        Assert.assertTrue(tmp.delete());
+        dir = new Path(tmp.getAbsolutePath());
+        input = new Path(dir, "input");
+
+        // Same points as canopy creation tests, keyed by line number
+        File inputFile = new File(getClass().getResource(
+                "/com/aamend/hadoop/clustering/mapreduce/canopies.input").getFile());
+        Scanner in = new Scanner(inputFile);
+        SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf,
+                new Path(input, "points"), Text.class, ArrayPrimitiveWritable.class);
+        try {
+            while (in.hasNext()) {
+                String[] line = in.nextLine().split(",");
+                int[] ap = new int[line.length];
+                for (int i = 0; i < line.length; i++) {
+                    ap[i] = Integer.parseInt(line[i]);
+                }
+                writer.append(new Text("point-" + points), new ArrayPrimitiveWritable(ap));
+                points++;
+            }
+        } finally {
+            IOUtils.closeStream(writer);
+            in.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fs.delete(dir, true);
+    }
+
+    @Test
+    public void testBuildAndClusterData() throws Exception {
+
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        Path data = new Path(dir, "data");
+
+        long canopies = CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        Assert.assertTrue(canopies > 0);
+
+        // Canopies ids are unique per reducer, only one at last iteration
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Writable value : read(clusters)) {
+            Assert.assertTrue(ids.add(((CanopyWritable) value).get().getId()));
+        }
+        Assert.assertEquals(canopies, ids.size());
+        Assert.assertEquals(canopies, CenterStore.read(fs, new Path(clusters, CenterStore.FILE_NAME)).size());
+
+        CanopyDriver.clusterData(conf, input, data, clusters, measure, 0.5f, 2);
+        int clustered = 0;
+        for (Writable value : read(data)) {
+            Assert.assertTrue(((ObjectWritable) value).get() instanceof Text);
+            clustered++;
+        }
+        Assert.assertTrue(clustered > 0);
+        Assert.assertTrue(clustered <= points);
+    }
+
+    @Test
+    public void testThreadedClusterData() throws Exception {
+
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        CanopyDriver.clusterData(conf, input, new Path(dir, "data"), clusters, measure, 0.5f, 2);
+
+        // Same assignments whatever the number of threads (keys are recycled)
+        conf.setInt(Canopy.MAPPER_THREADS, 3);
+        CanopyDriver.clusterData(conf, input, new Path(dir, "threaded"), clusters, measure, 0.5f, 2);
+        List<Writable> data = read(new Path(dir, "data"));
+        List<Writable> threaded = read(new Path(dir, "threaded"));
+        Assert.assertEquals(data.size(), threaded.size());
+        Set<String> expected = new HashSet<String>();
+        for (Writable value : data) {
+            expected.add(value.toString());
+        }
+        Set<String> actual = new HashSet<String>();
+        for (Writable value : threaded) {
+            actual.add(value.toString());
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testConcurrentMapTasks() throws Exception {
+
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+
+        // Many splits of distinct keys, so that map tasks run concurrently
+        Path splits = new Path(dir, "splits");
+        List<ArrayPrimitiveWritable> values = new ArrayList<ArrayPrimitiveWritable>();
+        for (Writable value : read(input)) {
+            values.add((ArrayPrimitiveWritable) value);
+        }
+        for (int i = 0; i < 8; i++) {
+            SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf,
+                    new Path(splits, "points-" + i), Text.class, ArrayPrimitiveWritable.class);
+            try {
+                for (int j = 0; j < 500 * values.size(); j++) {
+                    writer.append(new Text("point-" + i + "-" + j), values.get(j % values.size()));
+                }
+            } finally {
+                IOUtils.closeStream(writer);
+            }
+        }
+
+        // Same assignments whatever the number of concurrent tasks
+        conf.setInt(Canopy.LOCAL_THREADS, 1);
+        CanopyDriver.clusterData(conf, splits, new Path(dir, "sequential"), clusters, measure, 0.5f, 2);
+        conf.setInt(Canopy.LOCAL_THREADS, 8);
+        CanopyDriver.clusterData(conf, splits, new Path(dir, "concurrent"), clusters, measure, 0.5f, 2);
+        Map<String, Integer> sequential = readAssignments(new Path(dir, "sequential"));
+        Assert.assertEquals(8 * 500 * values.size(), sequential.size());
+        Assert.assertEquals(sequential, readAssignments(new Path(dir, "concurrent")));
+    }
+
+    @Test
+    public void testSinglePass() throws Exception {
+
+        conf.setBoolean(Canopy.SINGLE_PASS, true);
+        Path clusters = new Path(dir, "clusters");
+        long canopies = CanopyDriver.buildClusters(conf, input, clusters, 4,
+                new LevenshteinDistanceMeasure(), 0.25f, 0.15f, 1L);
+        Assert.assertTrue(canopies > 0);
+        Assert.assertEquals(canopies, read(clusters).size());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        conf.setBoolean(Canopy.INSTRUMENT, true);
+        Path clusters = new Path(dir, "clusters");
+        CanopyDriver.buildClusters(conf, input, clusters, 2, new LevenshteinDistanceMeasure(), 0.25f, 0.15f, 1L);
+
+        Path metrics = new Path(clusters, CanopyDriver.METRICS_FILE_NAME);
+        Assert.assertTrue(fs.exists(metrics));
+        Scanner in = new Scanner(fs.open(metrics), "UTF-8");
+        String json = in.useDelimiter("\\A").next();
+        in.close();
+        Assert.assertTrue(json.contains("Create clusters - 1/"));
+        Assert.assertTrue(json.contains(Instrumentation.COUNTER_DISTANCE_CALLS));
+        Assert.assertTrue(json.contains(Instrumentation.HISTOGRAM_CANOPY_SIZE + ".le."));
+    }
+
+    @Test
+    public void testDedup() throws Exception {
+
+        // Every point twice, under distinct keys
+        FileUtil.copy(fs, new Path(input, "points"), fs, new Path(input, "duplicates"), false, conf);
+
+        conf.setBoolean(Canopy.DEDUP, true);
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        long canopies = CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        Assert.assertTrue(canopies > 0);
+
+        // Same assignments as if each point was looked up, keys split in several records
+        conf.setInt(DuplicatesWritable.MAX_KEYS_CONF, 1);
+        CanopyDriver.clusterData(conf, input, new Path(dir, "dedup"), clusters, measure, 0.5f, 2);
+        conf.setBoolean(Canopy.DEDUP, false);
+        CanopyDriver.clusterData(conf, input, new Path(dir, "data"), clusters, measure, 0.5f, 2);
+        List<Writable> dedup = read(new Path(dir, "dedup"));
+        List<Writable> data = read(new Path(dir, "data"));
+        Assert.assertTrue(data.size() > points);
+        Assert.assertEquals(data.size(), dedup.size());
+        Set<Object> keys = new HashSet<Object>();
+        for (Writable value : data) {
+            keys.add(((ObjectWritable) value).get());
+        }
+        for (Writable value : dedup) {
+            Assert.assertTrue(keys.contains(((ObjectWritable) value).get()));
+        }
+    }
+
+    @Test
+    public void testDedupSinglePass() throws Exception {
+
+        // Every point twice, merged summaries weighted by duplicates
+        FileUtil.copy(fs, new Path(input, "points"), fs, new Path(input, "duplicates"), false, conf);
+
+        conf.setBoolean(Canopy.DEDUP, true);
+        conf.setBoolean(Canopy.SINGLE_PASS, true);
+        Path clusters = new Path(dir, "clusters");
+        long canopies = CanopyDriver.buildClusters(conf, input, clusters, 2,
+                new LevenshteinDistanceMeasure(), 0.25f, 0.15f, 1L);
+        Assert.assertTrue(canopies > 0);
+        long observations = 0L;
+        for (Writable value : read(clusters)) {
+            observations += ((CanopyWritable) value).get().getNum();
+        }
+        Assert.assertTrue(observations >= 2 * points);
+    }
+
+    @Test
+    public void testUpdateClusters() throws Exception {
+
+        // Seeds out of the whole history, updated with a copy of it
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        long canopies = CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        Map<Integer, Long> seeds = new HashMap<Integer, Long>();
+        for (Writable value : read(clusters)) {
+            Cluster seed = ((CanopyWritable) value).get();
+            seeds.put(seed.getId(), seed.getNum());
+        }
+
+        conf.setBoolean(Canopy.INCREMENTAL_RECENTER, true);
+        Path updated = new Path(dir, "updated");
+        long total = CanopyDriver.updateClusters(conf, input, clusters, updated, 2, measure, 0.25f, 0.15f, 1L);
+        Assert.assertTrue(total >= canopies);
+        Assert.assertTrue(fs.exists(new Path(updated, CenterStore.FILE_NAME)));
+
+        // All seeds are kept with their id, new canopies get new ids
+        Set<Integer> ids = new HashSet<Integer>();
+        long observations = 0L;
+        for (Writable value : read(updated)) {
+            Cluster canopy = ((CanopyWritable) value).get();
+            Assert.assertTrue(ids.add(canopy.getId()));
+            if (seeds.containsKey(canopy.getId())) {
+                Assert.assertTrue(canopy.getNum() >= seeds.get(canopy.getId()));
+                observations += canopy.getNum() - seeds.get(canopy.getId());
+            }
+        }
+        Assert.assertEquals(total, ids.size());
+        Assert.assertTrue(ids.containsAll(seeds.keySet()));
+        Assert.assertTrue(observations > 0);
+    }
+
+    @Test
+    public void testUpdateClustersSameCenter() throws Exception {
+
+        // Seeds out of the whole history, one of them twice under another id
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        List<Cluster> seeds = new ArrayList<Cluster>();
+        int maxId = 0;
+        for (Writable value : read(clusters)) {
+            Cluster seed = ((CanopyWritable) value).get();
+            seeds.add(seed);
+            maxId = Math.max(maxId, seed.getId());
+        }
+        seeds.add(new Canopy(maxId + 1, seeds.get(0).getCenter(), 1L));
+        Path duplicated = new Path(dir, "duplicated");
+        SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf,
+                new Path(duplicated, "part-r-00000"), Text.class, CanopyWritable.class);
+        try {
+            for (Cluster seed : seeds) {
+                writer.append(new Text("canopies"), new CanopyWritable(seed));
+            }
+        } finally {
+            IOUtils.closeStream(writer);
+        }
+
+        // No seed is lost
+        Path updated = new Path(dir, "updated");
+        CanopyDriver.updateClusters(conf, input, duplicated, updated, 2, measure, 0.25f, 0.15f, 1L);
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Writable value : read(updated)) {
+            ids.add(((CanopyWritable) value).get().getId());
+        }
+        for (Cluster seed : seeds) {
+            Assert.assertTrue(ids.contains(seed.getId()));
+        }
+    }
+
+    @Test
+    public void testMapOnlyBuckets() throws Exception {
+
+        DistanceMeasure measure = new LevenshteinDistanceMeasure();
+        Path clusters = new Path(dir, "clusters");
+        CanopyDriver.buildClusters(conf, input, clusters, 2, measure, 0.25f, 0.15f, 1L);
+        CanopyDriver.clusterData(conf, input, new Path(dir, "data"), clusters, measure, 0.5f, 2);
+
+        // Same assignments, written by mappers to a bucket per cluster id
+        int buckets = 3;
+        conf.setInt(Canopy.OUTPUT_BUCKETS, buckets);
+        Path mapOnly = new Path(dir, "map-only");
+        CanopyDriver.clusterData(conf, input, mapOnly, clusters, measure, 0.5f, 0);
+        Assert.assertTrue(read(mapOnly).isEmpty());
+
+        Set<String> expected = new HashSet<String>();
+        for (Writable value : read(new Path(dir, "data"))) {
+            expected.add(value.toString());
+        }
+        Set<String> actual = new HashSet<String>();
+        for (FileStatus status : fs.listStatus(mapOnly)) {
+            if (!status.getPath().getName().startsWith("bucket-")) {
+                continue;
+            }
+            int bucket = Integer.parseInt(status.getPath().getName().substring("bucket-".length()));
+            for (FileStatus part : fs.listStatus(status.getPath())) {
+                SequenceFile.Reader reader = new SequenceFile.Reader(fs, part.getPath(), conf);
+                try {
+                    IntWritable key = new IntWritable();
+                    ObjectWritable value = new ObjectWritable();
+                    while (reader.next(key, value)) {
+                        Assert.assertEquals(bucket, key.get() % buckets);
+                        actual.add(value.toString());
+                    }
+                } finally {
+                    IOUtils.closeStream(reader);
+                }
+            }
+        }
+        Assert.assertFalse(actual.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+
+    private Map<String, Integer> readAssignments(Path output) throws IOException {
+        Map<String, Integer> assignments = new HashMap<String, Integer>();
+        for (FileStatus status : fs.listStatus(output)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+            SequenceFile.Reader reader = new SequenceFile.Reader(fs, status.getPath(), conf);
+            try {
+                IntWritable key = new IntWritable();
+                ObjectWritable value = new ObjectWritable();
+                while (reader.next(key, value)) {
+                    Assert.assertNull(assignments.put(value.get().toString(), key.get()));
+                }
+            } finally {
+                IOUtils.closeStream(reader);
+            }
+        }
+        return assignments;
+    }
+
+    private List<Writable> read(Path output) throws IOException {
+        List<Writable> values = new ArrayList<Writable>();
+        for (FileStatus status : fs.listStatus(output)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+            SequenceFile.Reader reader = new SequenceFile.Reader(fs, status.getPath(), conf);
+            try {
+                Writable key = (Writable) reader.getKeyClass().newInstance();
+                Writable value = (Writable) reader.getValueClass().newInstance();
+                while (reader.next(key, value)) {
+                    if (key instanceof IntWritable) {
+                        Assert.assertTrue(((IntWritable) key).get() > 0);
+                    }
+                    values.add(value);
+                    value = (Writable) reader.getValueClass().newInstance();
+                }
+            } catch (InstantiationException e) {
+                throw new IOException(e);
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            } finally {
+                IOUtils.closeStream(reader);
+            }
+        }
+        return values;
+    }
+}
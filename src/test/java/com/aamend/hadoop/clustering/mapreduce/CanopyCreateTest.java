@@ -2,7 +2,9 @@ package com.aamend.hadoop.clustering.mapreduce;
 
 import com.aamend.hadoop.clustering.cluster.Canopy;
 import com.aamend.hadoop.clustering.cluster.CanopyWritable;
+import com.aamend.hadoop.clustering.cluster.CenterWritable;
 import com.aamend.hadoop.clustering.cluster.Cluster;
+import com.aamend.hadoop.clustering.cluster.DuplicatesWritable;
 import com.aamend.hadoop.clustering.distance.DistanceMeasure;
 import com.aamend.hadoop.clustering.distance.LevenshteinDistanceMeasure;
 import junit.framework.Assert;
@@ -10,7 +12,9 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.ArrayPrimitiveWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
 import org.apache.hadoop.mrunit.mapreduce.MapReduceDriver;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
 import org.apache.hadoop.mrunit.types.Pair;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,15 +27,18 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
 @RunWith(JUnit4.class)
 public class CanopyCreateTest {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CanopyCreateTest.class);
 
-    private MapReduceDriver<WritableComparable, ArrayPrimitiveWritable, Text, CanopyWritable, Text, CanopyWritable>
+    private MapReduceDriver<WritableComparable, ArrayPrimitiveWritable, CenterWritable, CanopyWritable, Text, CanopyWritable>
             mapReduceDriver;
     private DistanceMeasure measure;
 
@@ -99,6 +106,157 @@ public class CanopyCreateTest {
         LOGGER.info("{} clusters have been created", results.size());
     }
 
+    @Test
+    public void createCanopiesPartitioned() throws IOException {
+
+        Configuration conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.1f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.08f);
+        conf.setInt(Canopy.MAPPER_THREADS, 4);
+
+        List<Pair<Text, CanopyWritable>> results = mapReduceDriver.run();
+        for (Pair<Text, CanopyWritable> result : results) {
+            Cluster ap = result.getSecond().get();
+            LOGGER.info("Cluster : {}", ap.asFormattedString());
+        }
+        Assert.assertEquals("8 clusters should have been created", 8, results.size());
+    }
+
+    @Test
+    public void createCanopiesSinglePass() throws IOException {
+
+        mapReduceDriver.setReducer(new CanopyMergeReducer());
+        Configuration conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.1f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.08f);
+        conf.setBoolean(Canopy.SINGLE_PASS, true);
+
+        List<Pair<Text, CanopyWritable>> results = mapReduceDriver.run();
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Pair<Text, CanopyWritable> result : results) {
+            Cluster ap = result.getSecond().get();
+            LOGGER.info("Cluster : {}", ap.asFormattedString());
+            Assert.assertTrue(ids.add(ap.getId()));
+        }
+        Assert.assertEquals("8 clusters should have been created", 8, results.size());
+    }
+
+    @Test
+    public void mergeWeightedSummaries() throws IOException {
+
+        // Medoid of (A, B, C) is B unless A weighs its 10 observations
+        int[] a = new int[]{1, 2, 3, 4};
+        int[] b = new int[]{1, 2, 3, 5};
+        int[] c = new int[]{9, 2, 3, 5};
+        List<CanopyWritable> summaries = new ArrayList<CanopyWritable>();
+        summaries.add(new CanopyWritable(new Canopy(1, a, 10L)));
+        summaries.add(new CanopyWritable(new Canopy(2, b, 1L)));
+        summaries.add(new CanopyWritable(new Canopy(3, c, 1L)));
+
+        ReduceDriver<CenterWritable, CanopyWritable, Text, CanopyWritable> reduceDriver =
+                ReduceDriver.newReduceDriver(new CanopyMergeReducer());
+        Configuration conf = reduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.6f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.3f);
+        reduceDriver.withInput(new CenterWritable(a), summaries);
+
+        List<Pair<Text, CanopyWritable>> results = reduceDriver.run();
+        Assert.assertEquals(2, results.size());
+        Cluster merged = results.get(0).getSecond().get();
+        Assert.assertTrue(Arrays.equals(a, merged.getCenter()));
+        Assert.assertEquals(11L, merged.getNum());
+    }
+
+    @Test
+    public void createCanopiesWithCombiner() throws IOException {
+
+        Configuration conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.25f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.15f);
+        long expected = 0L;
+        for (Pair<Text, CanopyWritable> result : mapReduceDriver.run()) {
+            expected += result.getSecond().get().getNum();
+        }
+
+        setUp();
+        conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.25f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.15f);
+        conf.setInt(Canopy.COMBINER_SAMPLE, 2);
+        mapReduceDriver.setCombiner(new CanopyCreateCombiner());
+
+        List<Pair<Text, CanopyWritable>> results = mapReduceDriver.run();
+        long observations = 0L;
+        for (Pair<Text, CanopyWritable> result : results) {
+            Cluster ap = result.getSecond().get();
+            LOGGER.info("Cluster : {}", ap.asFormattedString());
+            observations += ap.getNum();
+        }
+        Assert.assertEquals("4 clusters should have been created", 4, results.size());
+        Assert.assertEquals("Observations should not be lost", expected, observations);
+    }
+
+    @Test
+    public void createCanopiesAggregated() throws IOException {
+
+        Configuration conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.25f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.15f);
+        long expected = 0L;
+        for (Pair<Text, CanopyWritable> result : mapReduceDriver.run()) {
+            expected += result.getSecond().get().getNum();
+        }
+
+        setUp();
+        conf = mapReduceDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.25f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.15f);
+        conf.setInt(Canopy.MAPPER_AGGREGATE, 2);
+        conf.setLong(Canopy.MAPPER_SPILL, 5L);
+
+        List<Pair<Text, CanopyWritable>> results = mapReduceDriver.run();
+        long observations = 0L;
+        for (Pair<Text, CanopyWritable> result : results) {
+            Cluster ap = result.getSecond().get();
+            LOGGER.info("Cluster : {}", ap.asFormattedString());
+            observations += ap.getNum();
+        }
+        Assert.assertEquals("4 clusters should have been created", 4, results.size());
+        Assert.assertEquals("Observations should not be lost", expected, observations);
+    }
+
+    @Test
+    public void aggregateKeepsWeight() throws IOException {
+
+        // A point standing for 5 duplicates creates a canopy weighing 5
+        DuplicatesWritable duplicates = new DuplicatesWritable(null);
+        for (int i = 1; i < 5; i++) {
+            duplicates.add(new DuplicatesWritable(null));
+        }
+
+        MapDriver<WritableComparable, ArrayPrimitiveWritable, CenterWritable, CanopyWritable> mapDriver =
+                MapDriver.newMapDriver(new CanopyCreateInitMapper());
+        Configuration conf = mapDriver.getConfiguration();
+        conf.set(Canopy.CLUSTER_MEASURE, measure.getClass().getName());
+        conf.setFloat(Canopy.CLUSTER_T1, 0.25f);
+        conf.setFloat(Canopy.CLUSTER_T2, 0.15f);
+        conf.setInt(Canopy.MAPPER_AGGREGATE, 2);
+        mapDriver.withInput(duplicates, new ArrayPrimitiveWritable(new int[]{1, 2, 3, 4}));
+
+        List<Pair<CenterWritable, CanopyWritable>> results = mapDriver.run();
+        Assert.assertEquals(1, results.size());
+        Cluster canopy = results.get(0).getSecond().get();
+        Assert.assertEquals(5L, canopy.getNum());
+        Assert.assertEquals(5L, canopy.getWeight());
+    }
+
     private List<Pair<WritableComparable, ArrayPrimitiveWritable>> getInputList()
             throws FileNotFoundException {
 
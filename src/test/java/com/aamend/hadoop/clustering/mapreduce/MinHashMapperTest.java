@@ -0,0 +1,82 @@
+package com.aamend.hadoop.clustering.mapreduce;
+
+import com.aamend.hadoop.clustering.cluster.Canopy;
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.ArrayPrimitiveWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Date: 17/10/26
+ */
+@RunWith(JUnit4.class)
+public class MinHashMapperTest {
+
+    private MapDriver<WritableComparable, ArrayPrimitiveWritable, LongWritable, ArrayPrimitiveWritable>
+            mapDriver;
+
+    @Before
+    public void setUp() {
+        mapDriver = MapDriver.newMapDriver(new MinHashMapper());
+        Configuration conf = mapDriver.getConfiguration();
+        conf.setInt(Canopy.MINHASH_BANDS, 8);
+        conf.setInt(Canopy.MINHASH_ROWS, 2);
+    }
+
+    @Test
+    public void testSameSetSameBucket() throws IOException {
+        mapDriver.withInput(new Text("a"), new ArrayPrimitiveWritable(new int[]{1, 2, 3, 4, 5}));
+        mapDriver.withInput(new Text("b"), new ArrayPrimitiveWritable(new int[]{5, 4, 3, 2, 1, 1}));
+        List<Pair<LongWritable, ArrayPrimitiveWritable>> results = mapDriver.run();
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(results.get(0).getFirst(), results.get(1).getFirst());
+    }
+
+    @Test
+    public void testSimilarSetsShareBuckets() throws IOException {
+
+        // Pairs of sets with a Jaccard similarity of 0.9 vs. random pairs
+        Random random = new Random(0L);
+        for (int i = 0; i < 200; i++) {
+            int[] point = new int[20];
+            for (int j = 0; j < point.length; j++) {
+                point[j] = i * 1000 + j;
+            }
+            int[] similar = point.clone();
+            similar[0] = -1;
+            int[] other = new int[20];
+            for (int j = 0; j < other.length; j++) {
+                other[j] = random.nextInt(100000);
+            }
+            mapDriver.withInput(new Text("p"), new ArrayPrimitiveWritable(point));
+            mapDriver.withInput(new Text("s"), new ArrayPrimitiveWritable(similar));
+            mapDriver.withInput(new Text("o"), new ArrayPrimitiveWritable(other));
+        }
+
+        List<Pair<LongWritable, ArrayPrimitiveWritable>> results = mapDriver.run();
+        int similarHits = 0;
+        int randomHits = 0;
+        for (int i = 0; i < results.size(); i += 3) {
+            if (results.get(i).getFirst().equals(results.get(i + 1).getFirst())) {
+                similarHits++;
+            }
+            if (results.get(i).getFirst().equals(results.get(i + 2).getFirst())) {
+                randomHits++;
+            }
+        }
+        Assert.assertTrue(similarHits > 140);
+        Assert.assertEquals(0, randomHits);
+    }
+}